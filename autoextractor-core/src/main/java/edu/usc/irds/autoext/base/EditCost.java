@@ -43,6 +43,15 @@ public interface EditCost<T> {
      */
     double getMaxUnitCost();
 
+    /**
+     * Minimum cost for any single insert, remove or replace operation.
+     * This is used for bounding the edit distances, a value of 0.0 disables the bounds.
+     * @return minimum bound on unit edit cost
+     */
+    default double getMinUnitCost() {
+        return 0.0;
+    }
+
 
     /**
      * true if the edit costs are symmetry. Symmetrc
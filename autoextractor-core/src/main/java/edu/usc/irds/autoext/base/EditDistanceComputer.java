@@ -7,6 +7,12 @@ package edu.usc.irds.autoext.base;
  */
 public interface EditDistanceComputer<T> {
 
+    /**
+     * The distance returned by {@link #computeDistance(Object, Object, double)}
+     * when the distance exceeds the given maximum distance
+     */
+    double DISTANCE_EXCEEDED = Double.POSITIVE_INFINITY;
+
     /**
      * Computes edit distance between two similar objects
      * @param object1 the first object
@@ -15,6 +21,20 @@ public interface EditDistanceComputer<T> {
      */
     double computeDistance(T object1, T object2);
 
+    /**
+     * Computes edit distance between two similar objects, if it is not more than the given maximum.
+     * The implementations may stop as soon as the distance is known to exceed the maximum.
+     * @param object1 the first object
+     * @param object2 the second object
+     * @param maxDistance the maximum distance of interest
+     * @return the edit distance measure if it is less than or equal to {@code maxDistance};
+     * {@link #DISTANCE_EXCEEDED} otherwise
+     */
+    default double computeDistance(T object1, T object2, double maxDistance) {
+        double distance = computeDistance(object1, object2);
+        return distance > maxDistance ? DISTANCE_EXCEEDED : distance;
+    }
+
 
     /**
      * Gets cost metric used for computing the edit distance
@@ -22,4 +42,14 @@ public interface EditDistanceComputer<T> {
      */
     EditCost<T> getCostMetric();
 
+    /**
+     * Gets the id of distance metric computed by this computer, which keeps apart the cached distances.
+     * The computers computing different distances for the same objects must have different ids,
+     * so the id shall include the parameters which change the distances.
+     * @return the metric id; by default the names of classes of this computer and its cost metric
+     */
+    default String getMetricId() {
+        return getClass().getName() + ":" + getCostMetric().getClass().getName();
+    }
+
 }
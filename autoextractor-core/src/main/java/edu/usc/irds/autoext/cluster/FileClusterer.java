@@ -1,29 +1,57 @@
 package edu.usc.irds.autoext.cluster;
 
+import edu.usc.irds.autoext.base.EditDistanceComputer;
+import edu.usc.irds.autoext.base.SimilarityComputer;
+import edu.usc.irds.autoext.matrix.DenseMatrix;
+import edu.usc.irds.autoext.matrix.MappedMatrix;
+import edu.usc.irds.autoext.matrix.Matrix;
+import edu.usc.irds.autoext.matrix.MatrixWriter;
+import edu.usc.irds.autoext.matrix.NeighborLists;
+import edu.usc.irds.autoext.matrix.PackedSymmetricMatrix;
+import edu.usc.irds.autoext.matrix.Precision;
+import edu.usc.irds.autoext.tree.CachedEditDistanceComputer;
 import edu.usc.irds.autoext.tree.GrossSimComputer;
+import edu.usc.irds.autoext.tree.LabelDictionary;
+import edu.usc.irds.autoext.tree.LowerBoundFilter;
+import edu.usc.irds.autoext.tree.PQGramComputer;
+import edu.usc.irds.autoext.tree.PathStrategyTEDComputer;
+import edu.usc.irds.autoext.tree.SAXTreeBuilder;
+import edu.usc.irds.autoext.tree.SimpleTreeMatchingComputer;
 import edu.usc.irds.autoext.tree.StructureSimComputer;
 import edu.usc.irds.autoext.tree.TreeNode;
+import edu.usc.irds.autoext.tree.TreeNormalizer;
+import edu.usc.irds.autoext.tree.TreeStore;
 import edu.usc.irds.autoext.tree.ZSTEDComputer;
-import edu.usc.irds.autoext.utils.MatrixUtils;
-import edu.usc.irds.autoext.utils.ParseUtils;
+import edu.usc.irds.autoext.utils.Checks;
+import edu.usc.irds.autoext.utils.DistanceCache;
+import edu.usc.irds.autoext.utils.Hashing;
+import edu.usc.irds.autoext.utils.ParallelMatrixBuilder;
+import edu.usc.irds.autoext.utils.TileCheckpoint;
 import edu.usc.irds.autoext.utils.Timer;
 import org.kohsuke.args4j.CmdLineException;
 import org.kohsuke.args4j.CmdLineParser;
 import org.kohsuke.args4j.Option;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.w3c.dom.Document;
+import org.xml.sax.InputSource;
 import org.xml.sax.SAXException;
 
 import java.io.BufferedWriter;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.PrintWriter;
 import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -39,10 +67,87 @@ public class FileClusterer {
     public static final String ED_DIST_FILE = "edit-distance.csv";
     public static final String TREE_SIM_FILE = "tree-sim.csv";
     public static final String GROSS_SIM_FILE = "gross-sim.csv";
+    public static final String GROSS_SIM_MATRIX_FILE = "gross-sim.bin";
+    public static final String NEIGHBORS_FILE = "neighbors.bin";
+    public static final String TREES_FILE = "trees.bin";
+    public static final String CHECKPOINT_FILE = "checkpoint.bin";
     public static final String CLUSTER_FILE = "clusters.txt";
     public static final String REPORT_FILE = "report.txt";
+    private static final double STRUCTURE_SIM_WEIGHT = 0.8;
     public static final char SEP = ',';
 
+    /**
+     * The tree distance measures available for the structural similarity
+     */
+    public enum DistanceMeasure {
+        /** Zhang-Shasha's tree edit distance */
+        ZSTED,
+        /** Tree edit distance with the path decomposition strategy chosen for every pair of subtrees */
+        PATH,
+        /** Approximate distance using pq-gram profiles */
+        PQGRAM,
+        /** Simple tree matching similarity, which is not an edit distance */
+        STM;
+
+        /**
+         * Creates the distance computer for this measure
+         * @return edit distance computer; null if this measure is not an edit distance
+         */
+        public EditDistanceComputer<TreeNode> createComputer() {
+            switch (this) {
+                case PATH:
+                    return new PathStrategyTEDComputer();
+                case PQGRAM:
+                    return new PQGramComputer();
+                case STM:
+                    return null;
+                default:
+                    return new ZSTEDComputer();
+            }
+        }
+
+        /**
+         * Creates the structural similarity computer for this measure
+         * @param cache the cache for edit distances
+         * @return similarity computer
+         */
+        public SimilarityComputer<TreeNode> createSimilarityComputer(DistanceCache cache) {
+            return createSimilarityComputer(createComputer(), cache, 0.0);
+        }
+
+        /**
+         * Creates the structural similarity computer for this measure
+         * @param computer the edit distance computer created by {@link #createComputer()}
+         * @param cache the cache for edit distances
+         * @param minSimilarity the similarities below this are reported as 0.0 without computing
+         *                      the exact distances; 0.0 to compute all of them
+         * @return similarity computer
+         */
+        public SimilarityComputer<TreeNode> createSimilarityComputer(EditDistanceComputer<TreeNode> computer,
+                                                                     DistanceCache cache, double minSimilarity) {
+            if (this == STM) {
+                return new SimpleTreeMatchingComputer();
+            }
+            return new StructureSimComputer(new CachedEditDistanceComputer(computer, cache), minSimilarity);
+        }
+
+        /**
+         * Gets the lower bound filter of the computer of this measure
+         * @param computer the edit distance computer created by {@link #createComputer()}
+         * @return the lower bound filter, null if the computer doesn't have one
+         */
+        public LowerBoundFilter getLowerBoundFilter(EditDistanceComputer<TreeNode> computer) {
+            switch (this) {
+                case ZSTED:
+                    return ((ZSTEDComputer) computer).getLowerBoundFilter();
+                case PATH:
+                    return ((PathStrategyTEDComputer) computer).getLowerBoundFilter();
+                default:
+                    return null;
+            }
+        }
+    }
+
     @Option(name = "-list",
             required = true,
             usage = "path to a file containing paths to html files that requires clustering")
@@ -53,6 +158,86 @@ public class FileClusterer {
             usage = "Path to directory to create intermediate files and reports")
     private  File workDir;
 
+    @Option(name = "-distance",
+            usage = "Tree distance measure for structural similarity : ZSTED, PATH, PQGRAM or STM")
+    private DistanceMeasure distanceMeasure = DistanceMeasure.ZSTED;
+
+    @Option(name = "-cache",
+            usage = "Path to distance cache file. The tree distances stored in this file are reused and" +
+                    " the newly computed ones are added to it")
+    private File cacheFile;
+
+    @Option(name = "-cachesize",
+            usage = "Maximum number of tree distances to be cached in memory")
+    private int cacheSize = DistanceCache.DEFAULT_MEMORY_CAPACITY;
+
+    @Option(name = "-normalize",
+            usage = "Tree normalization profile : 'none', 'default' or a specification like '"
+                    + TreeNormalizer.DEFAULT + "'. Applies to the trees parsed by the clustering pipeline only;"
+                    + " the legacy debug pipeline doesn't normalize")
+    private String normalization = TreeNormalizer.NONE;
+
+    @Option(name = "-threads",
+            usage = "Number of threads for computing the similarity matrix")
+    private int threads = Runtime.getRuntime().availableProcessors();
+
+    @Option(name = "-precision",
+            usage = "Precision of the similarity matrix : FLOAT or DOUBLE")
+    private Precision precision = Precision.FLOAT;
+
+    @Option(name = "-csv",
+            usage = "Export the similarity matrix to " + GROSS_SIM_FILE + " too")
+    private boolean csv = false;
+
+    @Option(name = "-compress",
+            usage = "Compress the similarity matrix stored in " + GROSS_SIM_MATRIX_FILE)
+    private boolean compress = false;
+
+    @Option(name = "-matrix",
+            forbids = "-sparse",
+            usage = "Path to a file for storing the similarity matrix off the heap. The file can be reused" +
+                    " for clustering again with -reuse")
+    private File matrixFile;
+
+    @Option(name = "-sparse",
+            forbids = "-matrix",
+            usage = "Keep only the nearest k neighbors above the threshold instead of the full similarity matrix," +
+                    " and store them in " + NEIGHBORS_FILE + " instead of " + GROSS_SIM_MATRIX_FILE)
+    private boolean sparse = false;
+
+    @Option(name = "-reuse",
+            forbids = "-incremental",
+            usage = "Cluster using the similarity matrix stored in -matrix file, or the neighbors stored in work" +
+                    " directory with -sparse, and the ids in work directory instead of computing the similarities again")
+    private boolean reuse = false;
+
+    @Option(name = "-incremental",
+            forbids = "-reuse",
+            usage = "Add the files in -list which are new to the previous run in work directory, and compute" +
+                    " only the similarities involving the new files. The previous run must have stored its" +
+                    " similarities with -matrix or -sparse, and used the same distance, normalization and pruning")
+    private boolean incremental = false;
+
+    @Option(name = "-checkpoint",
+            depends = "-matrix",
+            usage = "Interval in seconds for saving the progress of similarity computation in work directory." +
+                    " A restarted run resumes from the saved progress. 0 to disable")
+    private int checkpointInterval = 0;
+
+    @Option(name = "-prune",
+            usage = "Skip the exact tree distances of the pairs whose gross similarity can't reach -threshold," +
+                    " using the lower bounds of tree edit distance. The structural similarities of those pairs" +
+                    " are stored as 0.0, so the stored matrix can't be reused with a lower -threshold." +
+                    " Not supported by STM")
+    private boolean prune = false;
+
+    @Option(name = "-threshold",
+            usage = "Similarity threshold for the shared neighbors")
+    private double similarityThreshold = 0.75;
+
+    @Option(name = "-k",
+            usage = "Number of nearest neighbors for the shared neighbors")
+    private int k = 100;
 
     //This will be removed
     @Deprecated
@@ -68,7 +253,7 @@ public class FileClusterer {
             report.printf("Input specified : %s\n", listFile.getAbsolutePath());
 
             AtomicInteger skipCount = new AtomicInteger(0);
-            List<TreeNode> trees = readTrees(skipCount);
+            List<TreeNode> trees = readTrees(skipCount, null, Collections.emptySet());
             List<String> ids = trees.stream().map(TreeNode::getExternalId).collect(Collectors.toList());
 
             report.printf("Work Directory :%s\n", workDir.getAbsolutePath());
@@ -137,39 +322,104 @@ public class FileClusterer {
             report.printf("Starting at : %d\n", timer.getStart());
             report.printf("Input specified : %s\n", listFile.getAbsolutePath());
 
-            AtomicInteger skipCount = new AtomicInteger(0);
-            List<TreeNode> trees = readTrees(skipCount);
-            List<String> labels = trees.stream().map(TreeNode::getExternalId)
-                    .collect(Collectors.toList());
-            report.printf("Parsed %d files and skipped %d files \n", trees.size(), skipCount.get());
-            report.printf("Work Directory :%s\n", workDir.getAbsolutePath());
-            report.printf("Time taken to parse : %dms\n", timer.reset());
-
-            //Step1: write ids/paths to separate file
+            Checks.check(!reuse || sparse || matrixFile != null, "-reuse needs -matrix or -sparse");
+            Checks.check(!incremental || sparse || matrixFile != null, "-incremental needs -matrix or -sparse");
+            Checks.check(!prune || distanceMeasure != DistanceMeasure.STM, "-prune is not supported by STM");
+            List<String> labels;
             File idsFile = new File(workDir, IDS_FILE);
-            Files.write(idsFile.toPath(), labels);
-            LOG.info("Wrote paths to {} ", idsFile.toPath());
-            report.printf("Wrote %d ids to %s file in %dms\n", labels.size(), idsFile, timer.reset());
+            SharedNeighborClusterer clusterer = new SharedNeighborClusterer();
+            List<List<String>> clusters;
+            if (sparse) {
+                File neighborsFile = new File(workDir, NEIGHBORS_FILE);
+                NeighborLists neighbors;
+                if (reuse) {
+                    labels = Files.readAllLines(idsFile.toPath());
+                    neighbors = NeighborLists.read(neighborsFile);
+                    Checks.check(neighbors.size() == labels.size(),
+                            "The neighbors in " + neighborsFile + " don't match the ids in " + idsFile);
+                    report.printf("Reusing %d ids from %s and neighbors from %s\n",
+                            labels.size(), idsFile, neighborsFile);
+                } else {
+                    labels = new ArrayList<>();
+                    List<TreeNode> trees = loadPreviousTrees(report);
+                    NeighborLists previous = null;
+                    if (!trees.isEmpty()) {
+                        previous = NeighborLists.read(neighborsFile);
+                        Checks.check(previous.size() == trees.size(),
+                                "The neighbors in " + neighborsFile + " don't match the stored trees");
+                        if (k > previous.getK() || similarityThreshold < previous.getThreshold()) {
+                            // the previous lists may have dropped some of the neighbors needed now
+                            report.printf("Incremental : the previous neighbors have k=%d and threshold=%f," +
+                                    " computing all the pairs again\n", previous.getK(), previous.getThreshold());
+                            previous = null;
+                        }
+                    }
+                    int from = previous == null ? 0 : trees.size();
+                    readTrees(trees, labels, idsFile, report, timer);
+                    // the previous lists keep the neighbors among the previous trees
+                    neighbors = previous == null ? new NeighborLists(trees.size(), k, similarityThreshold)
+                            : previous.grow(trees.size());
+                    computeSimilarities(trees, from, report, timer, (builder, computer) ->
+                            builder.computeNeighborLists(computer, trees, TreeNode::getSize, neighbors, from));
+                    neighbors.write(neighborsFile);
+                    report.printf("Stored neighbors in %dms\n", timer.reset());
+                    storeTrees(trees, report, timer);
+                }
 
-            //Step 2: Compute similarity and store to file
-            //TODO: make this configurable
-            GrossSimComputer<TreeNode> simComputer = GrossSimComputer.createWebSimilarityComputer(0.8);
-            timer.reset();
-            double[][] similarityMatrix = MatrixUtils.computeSymmetricMatrix(simComputer, trees);
-            report.printf("Computed Gross similarity matrix in %dms\n", timer.reset());
-            File similarityFile = new File(workDir, GROSS_SIM_FILE);
-            writeToCSV(similarityMatrix, similarityFile);
-            report.printf("Stored similarity matrix in %dms\n", timer.reset());
+                //STEP 5: cluster
+                report.printf("Clustering:: SimilarityThreshold=%f," +
+                        " no. of neighbors:%d\n", similarityThreshold, k);
+                clusters = clusterer.cluster(neighbors,
+                        labels.toArray(new String[labels.size()]), similarityThreshold, k);
+            } else {
+                Matrix similarityMatrix;
+                if (reuse) {
+                    labels = Files.readAllLines(idsFile.toPath());
+                    MappedMatrix storedMatrix = MappedMatrix.open(matrixFile);
+                    similarityMatrix = storedMatrix;
+                    Checks.check(similarityMatrix.getRows() == labels.size(),
+                            "The matrix " + matrixFile + " doesn't match the ids in " + idsFile);
+                    // the pruned similarities are stored as zeros
+                    Checks.check(similarityThreshold >= storedMatrix.getPruningThreshold(),
+                            "The similarities in " + matrixFile + " were pruned below threshold="
+                                    + storedMatrix.getPruningThreshold() + ", they can't be reused for threshold="
+                                    + similarityThreshold);
+                    report.printf("Reusing %d ids from %s and similarity matrix from %s\n",
+                            labels.size(), idsFile, matrixFile.getAbsolutePath());
+                } else {
+                    labels = new ArrayList<>();
+                    List<TreeNode> trees = loadPreviousTrees(report);
+                    int from = trees.size();
+                    if (from > 0) {
+                        try (MappedMatrix previous = MappedMatrix.open(matrixFile)) {
+                            if (similarityThreshold < previous.getPruningThreshold()) {
+                                // the previous matrix has zeros for the similarities needed now
+                                report.printf("Incremental : the previous similarities were pruned below" +
+                                        " threshold=%f, computing all the pairs again\n",
+                                        previous.getPruningThreshold());
+                                from = 0;
+                            }
+                        }
+                    }
+                    readTrees(trees, labels, idsFile, report, timer);
+                    similarityMatrix = computeSimilarityMatrix(trees, from, report, timer);
+                    if (matrixFile != null) {
+                        storeTrees(trees, report, timer);
+                    }
+                }
 
-            //STEP 5: cluster
-            SharedNeighborClusterer clusterer = new SharedNeighborClusterer();
-            //TODO: make these configurable
-            double similarityThreshold = 0.75;
-            int k = 100;
-            report.printf("Clustering:: SimilarityThreshold=%f," +
-                    " no. of neighbors:%d\n", similarityThreshold, k);
-            List<List<String>> clusters = clusterer.cluster(similarityMatrix,
-                    labels.toArray(new String[labels.size()]), similarityThreshold, k);
+                //STEP 5: cluster
+                report.printf("Clustering:: SimilarityThreshold=%f," +
+                        " no. of neighbors:%d\n", similarityThreshold, k);
+                try {
+                    clusters = clusterer.cluster(similarityMatrix,
+                            labels.toArray(new String[labels.size()]), similarityThreshold, k);
+                } finally {
+                    if (similarityMatrix instanceof MappedMatrix) {
+                        ((MappedMatrix) similarityMatrix).close();
+                    }
+                }
+            }
             report.printf("Computed clusters in %dms\n", timer.reset());
             File clustersFile = new File(workDir, CLUSTER_FILE);
             writeClusters(clusters, clustersFile);
@@ -179,22 +429,264 @@ public class FileClusterer {
         LOG.info("Done.. Report stored in {} ", reportFile.getAbsolutePath());
     }
 
+    /**
+     * Loads the trees stored by the previous run, when running incrementally
+     * @param report the report writer
+     * @return the previous trees, empty when not running incrementally
+     * @throws IOException when an io error occurs
+     */
+    private List<TreeNode> loadPreviousTrees(PrintWriter report) throws IOException {
+        if (!incremental) {
+            return new ArrayList<>();
+        }
+        File treesFile = new File(workDir, TREES_FILE);
+        if (!treesFile.exists()) {
+            report.printf("Incremental : no previous run in %s\n", workDir);
+            return new ArrayList<>();
+        }
+        List<TreeNode> trees = TreeStore.read(treesFile, LabelDictionary.getDefault());
+        report.printf("Incremental : loaded %d trees of previous run from %s\n", trees.size(), treesFile);
+        return trees;
+    }
+
+    /**
+     * Parses the files which are not in the given trees yet, and writes the ids of all the trees.
+     * @param trees the trees to which the parsed trees are added
+     * @param labels the list to which the ids of all the trees are added
+     * @param idsFile the file to write the ids
+     * @param report the report writer
+     * @param timer the timer for reporting
+     * @throws IOException when an io error occurs
+     */
+    private void readTrees(List<TreeNode> trees, List<String> labels, File idsFile,
+                           PrintWriter report, Timer timer) throws IOException {
+        TreeNormalizer normalizer = TreeNormalizer.parse(normalization);
+        report.printf("Tree normalization : %s\n", normalizer == null ? TreeNormalizer.NONE : normalizer);
+        AtomicInteger skipCount = new AtomicInteger(0);
+        Set<String> parsed = new HashSet<>();
+        trees.forEach(tree -> parsed.add(tree.getExternalId()));
+        List<TreeNode> newTrees = readTrees(skipCount, normalizer, parsed);
+        trees.addAll(newTrees);
+        trees.forEach(tree -> labels.add(tree.getExternalId()));
+        report.printf("Parsed %d files and skipped %d files \n", newTrees.size(), skipCount.get());
+        report.printf("Work Directory :%s\n", workDir.getAbsolutePath());
+        report.printf("Time taken to parse : %dms\n", timer.reset());
+
+        //Step1: write ids/paths to separate file
+        Files.write(idsFile.toPath(), labels);
+        LOG.info("Wrote paths to {} ", idsFile.toPath());
+        report.printf("Wrote %d ids to %s file in %dms\n", labels.size(), idsFile, timer.reset());
+    }
+
+    /**
+     * Stores the trees for the incremental runs. The trees are stored after their similarities, so
+     * an incremental run which is stopped midway can be repeated : the similarities of the previous run are
+     * replaced only when the new ones are complete, and the extra rows of a matrix replaced just before
+     * stopping are ignored by the next run
+     * @param trees the trees
+     * @param report the report writer
+     * @param timer the timer for reporting
+     * @throws IOException when an io error occurs
+     */
+    private void storeTrees(List<TreeNode> trees, PrintWriter report, Timer timer) throws IOException {
+        File treesFile = new File(workDir, TREES_FILE);
+        TreeStore.write(trees, treesFile);
+        report.printf("Stored trees to %s in %dms\n", treesFile, timer.reset());
+    }
+
+    /**
+     * Computes the similarity matrix and stores it to file
+     * @param trees the trees
+     * @param from number of previous trees whose similarities are in the matrix file already
+     * @param report the report writer
+     * @param timer the timer for reporting
+     * @return the similarity matrix
+     * @throws IOException when an io error occurs
+     */
+    private Matrix computeSimilarityMatrix(List<TreeNode> trees, int from, PrintWriter report, Timer timer)
+            throws IOException {
+        Matrix similarityMatrix;
+        File checkpointFile = new File(workDir, CHECKPOINT_FILE);
+        long fingerprint = fingerprint(trees, from);
+        // an incremental run keeps the previous matrix until the grown one is complete
+        File targetFile = from > 0 ? new File(matrixFile.getPath() + ".tmp") : matrixFile;
+        if (checkpointInterval > 0 && targetFile.exists()
+                && TileCheckpoint.isResumable(checkpointFile, fingerprint)) {
+            similarityMatrix = MappedMatrix.open(targetFile, true);
+            Checks.check(similarityMatrix.getRows() == trees.size(),
+                    "The matrix " + targetFile + " doesn't match the checkpoint");
+            report.printf("Similarity matrix file : %s, resuming from %s\n",
+                    targetFile.getAbsolutePath(), checkpointFile);
+        } else if (from > 0) {
+            similarityMatrix = growMatrix(trees.size(), from, targetFile);
+            report.printf("Similarity matrix file : %s, copied %d previous rows in %dms\n",
+                    targetFile.getAbsolutePath(), from, timer.reset());
+        } else if (matrixFile != null) {
+            similarityMatrix = MappedMatrix.create(matrixFile, trees.size(), precision, getPruningThreshold());
+            report.printf("Similarity matrix file : %s\n", matrixFile.getAbsolutePath());
+        } else {
+            similarityMatrix = new PackedSymmetricMatrix(trees.size(), precision);
+        }
+        report.printf("Similarity matrix precision : %s\n", similarityMatrix.getPrecision());
+        TileCheckpoint checkpoint = checkpointInterval > 0 ? new TileCheckpoint(checkpointFile,
+                (MappedMatrix) similarityMatrix, fingerprint, checkpointInterval * 1000L) : null;
+        Matrix target = similarityMatrix;
+        computeSimilarities(trees, from, report, timer, (builder, computer) ->
+                builder.computeSymmetricMatrix(computer, trees, TreeNode::getSize, target, from, checkpoint));
+        if (checkpoint != null) {
+            report.printf("Checkpoint : resumed %d tiles, completed %d tiles\n",
+                    checkpoint.getResumedTiles(), checkpoint.getCompletedTiles());
+            // the matrix is complete; nothing was checkpointed when there were no new trees
+            Files.deleteIfExists(checkpointFile.toPath());
+        }
+        if (similarityMatrix instanceof MappedMatrix) {
+            ((MappedMatrix) similarityMatrix).flush();
+            if (targetFile != matrixFile) {
+                ((MappedMatrix) similarityMatrix).close();
+                Files.move(targetFile.toPath(), matrixFile.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                        StandardCopyOption.ATOMIC_MOVE);
+                similarityMatrix = MappedMatrix.open(matrixFile);
+            }
+        } else {
+            File similarityFile = new File(workDir, GROSS_SIM_MATRIX_FILE);
+            MatrixWriter.write(similarityMatrix, similarityFile, compress);
+        }
+        report.printf("Stored similarity matrix in %dms\n", timer.reset());
+        if (csv) {
+            File csvFile = new File(workDir, GROSS_SIM_FILE);
+            writeToCSV(similarityMatrix, csvFile);
+            report.printf("Exported similarity matrix to %s in %dms\n", csvFile, timer.reset());
+        }
+        return similarityMatrix;
+    }
+
+    /**
+     * Computes the fingerprint of the similarity computation, for identifying its checkpoint
+     * @param trees the trees
+     * @param from number of previous trees
+     * @return the fingerprint
+     */
+    private long fingerprint(List<TreeNode> trees, int from) {
+        long hash = Hashing.mix(distanceMeasure.name().hashCode());
+        hash = Hashing.combine(hash, normalization.hashCode());
+        hash = Hashing.combine(hash, from);
+        hash = Hashing.combine(hash, Double.doubleToLongBits(getMinStructureSimilarity()));
+        for (TreeNode tree : trees) {
+            hash = Hashing.combine(hash, tree.getExternalId().hashCode());
+            hash = Hashing.combine(hash, tree.getStructureHash());
+        }
+        return hash;
+    }
+
+    /**
+     * Creates a larger matrix having the similarities of the previous run. The matrix file of
+     * the previous run is left as it is
+     * @param n number of rows and columns of the new matrix
+     * @param from number of the previous trees
+     * @param file file for the new matrix
+     * @return the new matrix
+     * @throws IOException when an io error occurs
+     */
+    private MappedMatrix growMatrix(int n, int from, File file) throws IOException {
+        Files.deleteIfExists(file.toPath());
+        MappedMatrix matrix;
+        try (MappedMatrix previous = MappedMatrix.open(matrixFile)) {
+            // the previous trees come first; a run stopped after replacing the matrix has left more rows
+            Checks.check(previous.getRows() >= from,
+                    "The matrix " + matrixFile + " doesn't match the stored trees");
+            // the previous similarities were pruned at a threshold not above the current one
+            matrix = MappedMatrix.create(file, n, previous.getPrecision(),
+                    Math.max(previous.getPruningThreshold(), getPruningThreshold()));
+            for (int i = 0; i < from; i++) {
+                for (int j = i; j < from; j++) {
+                    matrix.set(i, j, previous.get(i, j));
+                }
+            }
+        }
+        return matrix;
+    }
+
+    /**
+     * Computes the gross similarities of trees using the distance cache
+     * @param trees the trees
+     * @param from number of previous trees, whose similarities among themselves are not computed
+     * @param report the report writer
+     * @param timer the timer for reporting
+     * @param computation applies the similarity computer on the trees using the matrix builder
+     * @throws IOException when an io error occurs
+     */
+    private void computeSimilarities(List<TreeNode> trees, int from, PrintWriter report, Timer timer,
+                                     BiConsumer<ParallelMatrixBuilder, GrossSimComputer<TreeNode>> computation)
+            throws IOException {
+        //Step 2: Compute similarity
+        report.printf("Tree distance measure : %s\n", distanceMeasure);
+        try (DistanceCache cache = new DistanceCache(cacheSize, cacheFile)) {
+            report.printf("Distance cache file : %s\n", cacheFile == null ? "none" : cacheFile.getAbsolutePath());
+            EditDistanceComputer<TreeNode> edComputer = distanceMeasure.createComputer();
+            double minStructureSim = getMinStructureSimilarity();
+            report.printf("Pruning : %s\n", minStructureSim > 0.0
+                    ? "structural similarity below " + minStructureSim : "none");
+            GrossSimComputer<TreeNode> simComputer = GrossSimComputer.createWebSimilarityComputer(
+                    STRUCTURE_SIM_WEIGHT, distanceMeasure.createSimilarityComputer(edComputer, cache, minStructureSim));
+            ParallelMatrixBuilder matrixBuilder = new ParallelMatrixBuilder(threads);
+            report.printf("Threads : %d\n", matrixBuilder.getParallelism());
+            timer.reset();
+            computation.accept(matrixBuilder, simComputer);
+            report.printf("Computed Gross similarity of %d trees, %d of them new, in %dms\n",
+                    trees.size(), trees.size() - from, timer.reset());
+            report.printf("Distance cache : %s\n", cache.getStats());
+            LowerBoundFilter filter = distanceMeasure.getLowerBoundFilter(edComputer);
+            if (minStructureSim > 0.0 && filter != null) {
+                report.printf("Lower bounds : checked %d pairs, pruned %s\n",
+                        filter.getCheckedCount(), filter.getPrunedCounts());
+            }
+        }
+    }
+
+    /**
+     * Gets the threshold below which the gross similarities are pruned
+     * @return the similarity threshold when pruning, 0.0 otherwise
+     */
+    private double getPruningThreshold() {
+        return prune ? similarityThreshold : 0.0;
+    }
+
+    /**
+     * Computes the minimum structural similarity of the pairs whose gross similarity can reach the threshold,
+     * assuming the highest style similarity
+     * @return minimum structural similarity, 0.0 when not pruning
+     */
+    private double getMinStructureSimilarity() {
+        if (!prune) {
+            return 0.0;
+        }
+        return Math.max(0.0, (similarityThreshold - (1.0 - STRUCTURE_SIM_WEIGHT)) / STRUCTURE_SIM_WEIGHT);
+    }
+
     /**
      * parses the files and builts trees
      * @param skipCounter the counter to be used to increment when some files are skipped
+     * @param normalizer the normalizer for the trees, null for no normalization
+     * @param parsed paths of the files which are parsed already, these are not read again
      * @return list of trees read
      * @throws IOException when an io error occures
      */
-    private List<TreeNode> readTrees(AtomicInteger skipCounter) throws IOException {
+    private List<TreeNode> readTrees(AtomicInteger skipCounter, TreeNormalizer normalizer,
+                                     Set<String> parsed) throws IOException {
         List<TreeNode> trees = new ArrayList<>();
+        SAXTreeBuilder builder = new SAXTreeBuilder(LabelDictionary.getDefault(), normalizer);
         Stream<String> paths = Files.lines(listFile.toPath())
                 .map(String::trim)  //no spaces
-                .filter(s -> !(s.isEmpty() || s.startsWith("#")));// no empty lines and no comment lines
+                .filter(s -> !(s.isEmpty() || s.startsWith("#")))// no empty lines and no comment lines
+                .filter(s -> !parsed.contains(s));
 
         paths.forEach(p -> {
             try {
-                Document doc = ParseUtils.parseFile(p);
-                TreeNode tree = new TreeNode(doc.getDocumentElement(), null);
+                // all trees are kept in memory, the detached trees don't hold the DOMs
+                TreeNode tree;
+                try (InputStream stream = new FileInputStream(p)) {
+                    tree = builder.build(new InputSource(stream));
+                }
                 tree.setExternalId(p);
                 trees.add(tree);
             } catch (IOException | SAXException e) {
@@ -232,11 +724,26 @@ public class FileClusterer {
      * @throws IOException when an IO error occurs
      */
     private void writeToCSV(double[][] matrix, File csvFile) throws IOException {
+        writeToCSV(new DenseMatrix(matrix), csvFile);
+    }
+
+    /**
+     * Writes given matrix to CSV file
+     * @param matrix the matrix
+     * @param csvFile the target csv file
+     * @throws IOException when an IO error occurs
+     */
+    private void writeToCSV(Matrix matrix, File csvFile) throws IOException {
+        boolean singlePrecision = matrix.getPrecision() == Precision.FLOAT;
         try (BufferedWriter writer = new BufferedWriter(new FileWriter(csvFile))) {
-            for (double[] row : matrix) {
-                writer.write(String.valueOf(row[0]));
-                for (int i = 1; i < row.length; i++) {
-                    writer.append(SEP).append(String.valueOf(row[i]));
+            for (int i = 0; i < matrix.getRows(); i++) {
+                for (int j = 0; j < matrix.getColumns(); j++) {
+                    if (j > 0) {
+                        writer.append(SEP);
+                    }
+                    double value = matrix.get(i, j);
+                    // the float values are printed without the noise of widening
+                    writer.write(singlePrecision ? String.valueOf((float) value) : String.valueOf(value));
                 }
                 writer.write('\n');
             }
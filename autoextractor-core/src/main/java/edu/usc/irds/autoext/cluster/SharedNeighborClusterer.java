@@ -1,5 +1,9 @@
 package edu.usc.irds.autoext.cluster;
 
+import edu.usc.irds.autoext.matrix.DenseMatrix;
+import edu.usc.irds.autoext.matrix.Matrix;
+import edu.usc.irds.autoext.matrix.NeighborLists;
+import edu.usc.irds.autoext.matrix.Precision;
 import edu.usc.irds.autoext.tree.StructureSimComputer;
 import edu.usc.irds.autoext.tree.TreeNode;
 import edu.usc.irds.autoext.tree.ZSTEDComputer;
@@ -66,15 +70,65 @@ public class SharedNeighborClusterer {
     public List<List<String>> cluster(double simMatrix[][], String[] labels,
                                       double simThreshold,
                                       int k){
+        return cluster(new DenseMatrix(simMatrix), labels, simThreshold, k);
+    }
+
+    /**
+     * Clusters documents
+     * @param simMatrix similarity matrix, values in between [0.0 to 1.0] inclusive
+     * @param labels labels for items in similarity matrix
+     * @param simThreshold similarity threshold to treat that the items are similar, usually >= 0.8
+     * @param k number of nearest neighbours to start with
+     */
+    public List<List<String>> cluster(Matrix simMatrix, String[] labels,
+                                      double simThreshold,
+                                      int k){
         long statTime = System.currentTimeMillis();
-        Checks.check(simMatrix.length == labels.length,
+        Checks.check(simMatrix.getRows() == labels.length,
                 "Couldn't match labels to similarity matrix ");
 
         //computing the table
         List<BitSet> table = new LinkedList<>();
-        for (double[] simRow : simMatrix) {
-            table.add(findNearestNeighbors(simRow, simThreshold, k));
+        for (int i = 0; i < simMatrix.getRows(); i++) {
+            table.add(findNearestNeighbors(simMatrix, i, simThreshold, k));
         }
+        return cluster(table, labels, simThreshold, statTime);
+    }
+
+    /**
+     * Clusters documents using their nearest neighbors
+     * @param neighbors nearest neighbors of the items, computed with a threshold and k not more
+     *                  restrictive than the given ones
+     * @param labels labels for items in the neighbor lists
+     * @param simThreshold similarity threshold to treat that the items are similar, usually >= 0.8
+     * @param k number of nearest neighbours to start with
+     */
+    public List<List<String>> cluster(NeighborLists neighbors, String[] labels,
+                                      double simThreshold,
+                                      int k){
+        long statTime = System.currentTimeMillis();
+        Checks.check(neighbors.size() == labels.length,
+                "Couldn't match labels to neighbor lists ");
+        Checks.check(k <= neighbors.getK() && simThreshold >= neighbors.getThreshold(),
+                "The neighbor lists don't have enough neighbors for the given threshold and k");
+
+        List<BitSet> table = new LinkedList<>();
+        for (int i = 0; i < neighbors.size(); i++) {
+            table.add(findNearestNeighbors(neighbors, i, simThreshold, k));
+        }
+        return cluster(table, labels, simThreshold, statTime);
+    }
+
+    /**
+     * Clusters documents by collapsing the similar neighborhoods
+     * @param table nearest neighbors of items
+     * @param labels labels for items
+     * @param simThreshold similarity threshold to treat that the neighborhoods are similar
+     * @param statTime start time of clustering
+     * @return clusters
+     */
+    private List<List<String>> cluster(List<BitSet> table, String[] labels,
+                                       double simThreshold, long statTime) {
 
         int maxIterations = 100;
         LOG.debug("Starting to cluster {} elements, max iterations={}",
@@ -147,14 +201,30 @@ public class SharedNeighborClusterer {
      * @return bit sequence representation of nearest neighbors
      */
     public BitSet findNearestNeighbors(double[] similarity, double simThreshold, int k){
+        return findNearestNeighbors(new DenseMatrix(new double[][]{similarity}), 0, simThreshold, k);
+    }
+
+    /**
+     * Finds nearest neighbors based on similarity measures
+     * @param simMatrix similarity matrix
+     * @param row index of the item whose neighbors are to be found
+     * @param simThreshold cut off similarity to make the computations faster.
+     *                     Anything below this will be ignored
+     * @param k number of neighbors to be picked at max
+     * @return bit sequence representation of nearest neighbors
+     */
+    public BitSet findNearestNeighbors(Matrix simMatrix, int row, double simThreshold, int k){
 
         SortedSet<Tuple2<Double, Integer>> nearests = new TreeSet<>(descendingComparator);
-        int n = similarity.length;
+        int n = simMatrix.getColumns();
+        // the float similarities are compared with the threshold rounded to a float, as in NeighborLists
+        double threshold = simMatrix.getPrecision() == Precision.FLOAT ? (float) simThreshold : simThreshold;
         // the given node itself will have 1.0 score which is the highest similarity,
         // so no need to add it at the zeroth position explicitly
         for (int i = 0; i < n; i++) {
-            if (similarity[i] >= simThreshold) {
-                nearests.add(new Tuple2<>(similarity[i], i));
+            double similarity = simMatrix.get(row, i);
+            if (similarity >= threshold) {
+                nearests.add(new Tuple2<>(similarity, i));
             }
         }
         BitSet nearestNeighbors = new BitSet();
@@ -170,6 +240,27 @@ public class SharedNeighborClusterer {
         return nearestNeighbors;
     }
 
+    /**
+     * Finds nearest neighbors from the neighbor lists
+     * @param neighbors neighbor lists
+     * @param row index of the item whose neighbors are to be found
+     * @param simThreshold cut off similarity. Anything below this will be ignored
+     * @param k number of neighbors to be picked at max
+     * @return bit sequence representation of nearest neighbors
+     */
+    public BitSet findNearestNeighbors(NeighborLists neighbors, int row, double simThreshold, int k){
+        int[] indices = neighbors.getNeighbors(row);
+        float[] similarities = neighbors.getSimilarities(row);
+        BitSet nearestNeighbors = new BitSet();
+        // the similarities are stored as floats, so is the threshold compared with them
+        float threshold = (float) simThreshold;
+        // the lists are sorted, the nearest first
+        for (int i = 0; i < indices.length && i < k && similarities[i] >= threshold; i++) {
+            nearestNeighbors.set(indices[i]);
+        }
+        return nearestNeighbors;
+    }
+
     public static void main(String[] args) throws IOException, SAXException {
         String dir = "/home/tg/work/data/htmls/yellowpages/test2";
         String[] fileNames = new File(dir).list();
@@ -0,0 +1,54 @@
+package edu.usc.irds.autoext.matrix;
+
+/**
+ * A matrix backed by a two dimensional array
+ */
+public class DenseMatrix implements Matrix {
+
+    private final double[][] table;
+
+    /**
+     * Creates a matrix of zeros
+     * @param rows number of rows
+     * @param columns number of columns
+     */
+    public DenseMatrix(int rows, int columns) {
+        this(new double[rows][columns]);
+    }
+
+    /**
+     * Creates a matrix backed by the array, the changes to the matrix are written to the array
+     * @param table the array of rows
+     */
+    public DenseMatrix(double[][] table) {
+        this.table = table;
+    }
+
+    /**
+     * Gets the backing array
+     * @return array of rows
+     */
+    public double[][] getTable() {
+        return table;
+    }
+
+    @Override
+    public int getRows() {
+        return table.length;
+    }
+
+    @Override
+    public int getColumns() {
+        return table.length == 0 ? 0 : table[0].length;
+    }
+
+    @Override
+    public double get(int i, int j) {
+        return table[i][j];
+    }
+
+    @Override
+    public void set(int i, int j, double value) {
+        table[i][j] = value;
+    }
+}
@@ -0,0 +1,203 @@
+package edu.usc.irds.autoext.matrix;
+
+import edu.usc.irds.autoext.utils.Checks;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * A square symmetric matrix stored in a memory mapped file, for the matrices which don't fit in the heap.
+ * The upper triangle is stored in the same layout as {@link PackedSymmetricMatrix}, after a header
+ * describing the size and precision, so a file can be reopened later to read the matrix again.
+ * The header also records the threshold below which the similarities were pruned, if they were,
+ * since such a matrix can't be reused with a lower threshold.
+ * The operating system pages the file in and out, only the recently accessed regions stay in memory.
+ * The file is mapped in regions of 1GB since a single mapping can't exceed 2GB.
+ */
+public class MappedMatrix implements Matrix, Closeable, Flushable {
+
+    private static final long MAGIC = 0x4155544f45584d58L; // AUTOEXMX
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 32;
+    private static final int REGION_BITS = 30;
+    private static final long REGION_SIZE = 1L << REGION_BITS;
+
+    private final File file;
+    private final int n;
+    private final Precision precision;
+    private final double pruningThreshold;
+    private final int cellBits;
+    private final boolean writable;
+    private final MappedByteBuffer[] regions;
+
+    private MappedMatrix(File file, int n, Precision precision, double pruningThreshold, boolean writable)
+            throws IOException {
+        this.file = file;
+        this.n = n;
+        this.precision = precision;
+        this.pruningThreshold = pruningThreshold;
+        this.cellBits = precision == Precision.FLOAT ? 2 : 3;
+        this.writable = writable;
+        long dataSize = PackedSymmetricMatrix.numCells(n) << cellBits;
+        int numRegions = (int) ((dataSize + REGION_SIZE - 1) >>> REGION_BITS);
+        this.regions = new MappedByteBuffer[numRegions];
+        try (RandomAccessFile raf = new RandomAccessFile(file, writable ? "rw" : "r");
+             FileChannel channel = raf.getChannel()) {
+            FileChannel.MapMode mode = writable ? FileChannel.MapMode.READ_WRITE : FileChannel.MapMode.READ_ONLY;
+            for (int r = 0; r < numRegions; r++) {
+                long offset = (long) r << REGION_BITS;
+                // the mappings stay valid after the channel is closed
+                regions[r] = channel.map(mode, HEADER_SIZE + offset, Math.min(REGION_SIZE, dataSize - offset));
+            }
+        }
+    }
+
+    /**
+     * Creates a matrix of zeros in a new file. The existing file is overwritten
+     * @param file the file
+     * @param n number of rows and columns
+     * @param precision precision of values
+     * @return the matrix which can be read and written
+     * @throws IOException when an io error occurs
+     */
+    public static MappedMatrix create(File file, int n, Precision precision) throws IOException {
+        return create(file, n, precision, 0.0);
+    }
+
+    /**
+     * Creates a matrix of zeros in a new file. The existing file is overwritten
+     * @param file the file
+     * @param n number of rows and columns
+     * @param precision precision of values
+     * @param pruningThreshold the similarities below this threshold may be left as zeros, 0.0 if none are
+     * @return the matrix which can be read and written
+     * @throws IOException when an io error occurs
+     */
+    public static MappedMatrix create(File file, int n, Precision precision, double pruningThreshold)
+            throws IOException {
+        Checks.check(n >= 0, "The size can't be negative");
+        int cellBits = precision == Precision.FLOAT ? 2 : 3;
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(0);
+            raf.setLength(HEADER_SIZE + (PackedSymmetricMatrix.numCells(n) << cellBits));
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putLong(MAGIC).putInt(VERSION).putInt(n).putInt(precision.ordinal()).putDouble(pruningThreshold);
+            header.flip();
+            raf.getChannel().write(header, 0);
+        }
+        return new MappedMatrix(file, n, precision, pruningThreshold, true);
+    }
+
+    /**
+     * Opens the matrix stored in the file for reading
+     * @param file the file created by {@link #create(File, int, Precision)}
+     * @return the read only matrix
+     * @throws IOException when an io error occurs
+     */
+    public static MappedMatrix open(File file) throws IOException {
+        return open(file, false);
+    }
+
+    /**
+     * Opens the matrix stored in the file
+     * @param file the file created by {@link #create(File, int, Precision)}
+     * @param writable true to open for reading and writing, false to open read only
+     * @return the matrix
+     * @throws IOException when an io error occurs
+     */
+    public static MappedMatrix open(File file, boolean writable) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            while (header.hasRemaining() && raf.getChannel().read(header, header.position()) >= 0) {
+                // read fully
+            }
+        }
+        header.flip();
+        Checks.check(header.remaining() == HEADER_SIZE && header.getLong() == MAGIC,
+                "Not a matrix file :" + file);
+        Checks.check(header.getInt() == VERSION, "Unsupported matrix file version :" + file);
+        int n = header.getInt();
+        Precision precision = Precision.values()[header.getInt()];
+        // zero in the files written before the threshold was recorded, none of their similarities were pruned
+        double pruningThreshold = header.getDouble();
+        return new MappedMatrix(file, n, precision, pruningThreshold, writable);
+    }
+
+    /**
+     * Gets the threshold below which the similarities may have been pruned, i.e. stored as zeros
+     * @return the pruning threshold, 0.0 if none of the similarities were pruned
+     */
+    public double getPruningThreshold() {
+        return pruningThreshold;
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    @Override
+    public int getRows() {
+        return n;
+    }
+
+    @Override
+    public int getColumns() {
+        return n;
+    }
+
+    @Override
+    public double get(int i, int j) {
+        long offset = PackedSymmetricMatrix.position(i, j, n) << cellBits;
+        MappedByteBuffer region = regions[(int) (offset >>> REGION_BITS)];
+        int index = (int) (offset & (REGION_SIZE - 1));
+        return precision == Precision.FLOAT ? region.getFloat(index) : region.getDouble(index);
+    }
+
+    @Override
+    public void set(int i, int j, double value) {
+        long offset = PackedSymmetricMatrix.position(i, j, n) << cellBits;
+        MappedByteBuffer region = regions[(int) (offset >>> REGION_BITS)];
+        int index = (int) (offset & (REGION_SIZE - 1));
+        if (precision == Precision.FLOAT) {
+            region.putFloat(index, (float) value);
+        } else {
+            region.putDouble(index, value);
+        }
+    }
+
+    @Override
+    public boolean isSymmetric() {
+        return true;
+    }
+
+    @Override
+    public Precision getPrecision() {
+        return precision;
+    }
+
+    /**
+     * Writes the changes to the file
+     */
+    @Override
+    public void flush() {
+        if (writable) {
+            for (MappedByteBuffer region : regions) {
+                region.force();
+            }
+        }
+    }
+
+    /**
+     * Writes the changes to the file. The memory is released when this matrix is garbage collected
+     */
+    @Override
+    public void close() {
+        flush();
+    }
+}
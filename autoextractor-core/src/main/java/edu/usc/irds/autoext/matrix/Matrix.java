@@ -0,0 +1,55 @@
+package edu.usc.irds.autoext.matrix;
+
+/**
+ * Defines a contract for the matrices of pairwise measures
+ *
+ * @see DenseMatrix
+ * @see PackedSymmetricMatrix
+ */
+public interface Matrix {
+
+    /**
+     * Gets number of rows
+     * @return number of rows
+     */
+    int getRows();
+
+    /**
+     * Gets number of columns
+     * @return number of columns
+     */
+    int getColumns();
+
+    /**
+     * Gets the value of a cell
+     * @param i the row index
+     * @param j the column index
+     * @return the value at (i, j)
+     */
+    double get(int i, int j);
+
+    /**
+     * Sets the value of a cell. The matrices should allow the different cells to be set from
+     * different threads.
+     * @param i the row index
+     * @param j the column index
+     * @param value the value
+     */
+    void set(int i, int j, double value);
+
+    /**
+     * true if the value at (i, j) is always same as the value at (j, i)
+     * @return true for symmetric matrices
+     */
+    default boolean isSymmetric() {
+        return false;
+    }
+
+    /**
+     * Gets the precision of stored values
+     * @return the precision
+     */
+    default Precision getPrecision() {
+        return Precision.DOUBLE;
+    }
+}
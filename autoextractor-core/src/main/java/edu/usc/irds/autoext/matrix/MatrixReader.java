@@ -0,0 +1,215 @@
+package edu.usc.irds.autoext.matrix;
+
+import edu.usc.irds.autoext.utils.Checks;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Reads the matrices written by {@link MatrixWriter}. The blocks of rows are read on demand and a few
+ * recently used blocks are kept in memory, so the rows can be read in any order without loading the
+ * whole matrix. Reading a column of a symmetric matrix touches all the blocks above the row; use
+ * {@link #readInto(Matrix)} to load the whole matrix.
+ * The matrix is read only.
+ *
+ * @see MatrixWriter
+ */
+public class MatrixReader implements Matrix, Closeable {
+
+    private static final int CACHED_BLOCKS = 16;
+
+    private final FileChannel channel;
+    private final int rows;
+    private final int columns;
+    private final Precision precision;
+    private final boolean symmetric;
+    private final boolean compressed;
+    private final int rowsPerBlock;
+    private final long[] blockOffsets;
+    private final Map<Integer, ByteBuffer> blocks = new LinkedHashMap<Integer, ByteBuffer>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, ByteBuffer> eldest) {
+            return size() > CACHED_BLOCKS;
+        }
+    };
+
+    /**
+     * Opens a matrix file
+     * @param file the file
+     * @throws IOException when an io error occurs
+     */
+    public MatrixReader(File file) throws IOException {
+        this.channel = new RandomAccessFile(file, "r").getChannel();
+        try {
+            ByteBuffer header = read(0, MatrixWriter.HEADER_SIZE);
+            Checks.check(header.getLong() == MatrixWriter.MAGIC, "Not a matrix file :" + file);
+            Checks.check(header.getInt() == MatrixWriter.VERSION, "Unsupported matrix file version :" + file);
+            this.rows = header.getInt();
+            this.columns = header.getInt();
+            this.precision = Precision.values()[header.getInt()];
+            this.symmetric = header.get() != 0;
+            this.compressed = header.get() != 0;
+            header.getShort();
+            this.rowsPerBlock = header.getInt();
+            long indexOffset = header.getLong();
+            int numBlocks = (rows + rowsPerBlock - 1) / rowsPerBlock;
+            ByteBuffer index = read(indexOffset, (numBlocks + 1) * 8);
+            this.blockOffsets = new long[numBlocks + 1];
+            for (int i = 0; i <= numBlocks; i++) {
+                blockOffsets[i] = index.getLong();
+            }
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Computes the number of cells stored for a range of rows
+     * @param start the first row
+     * @param end the row after the last one
+     * @param columns number of columns
+     * @param symmetric true if only the upper triangle is stored
+     * @return number of cells
+     */
+    static long blockCells(int start, int end, int columns, boolean symmetric) {
+        if (!symmetric) {
+            return (long) (end - start) * columns;
+        }
+        // columns - i cells in row i
+        return (long) (end - start) * columns - ((long) end * (end - 1) / 2 - (long) start * (start - 1) / 2);
+    }
+
+    @Override
+    public int getRows() {
+        return rows;
+    }
+
+    @Override
+    public int getColumns() {
+        return columns;
+    }
+
+    @Override
+    public boolean isSymmetric() {
+        return symmetric;
+    }
+
+    @Override
+    public Precision getPrecision() {
+        return precision;
+    }
+
+    public boolean isCompressed() {
+        return compressed;
+    }
+
+    @Override
+    public synchronized double get(int i, int j) {
+        if (symmetric && i > j) {
+            int tmp = i;
+            i = j;
+            j = tmp;
+        }
+        if (i < 0 || i >= rows || j < 0 || j >= columns) {
+            throw new IndexOutOfBoundsException("(" + i + ", " + j + ") is outside the matrix");
+        }
+        int blockIndex = i / rowsPerBlock;
+        ByteBuffer block = blocks.get(blockIndex);
+        if (block == null) {
+            try {
+                block = readBlock(blockIndex);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            blocks.put(blockIndex, block);
+        }
+        int blockStart = blockIndex * rowsPerBlock;
+        long cell = blockCells(blockStart, i, columns, symmetric) + (symmetric ? j - i : j);
+        return precision == Precision.FLOAT ? block.getFloat((int) (cell * 4)) : block.getDouble((int) (cell * 8));
+    }
+
+    @Override
+    public void set(int i, int j, double value) {
+        throw new UnsupportedOperationException("The matrix is read only");
+    }
+
+    /**
+     * Reads all the values into the given matrix, block by block
+     * @param matrix the matrix of same size
+     * @return the given matrix
+     * @throws IOException when an io error occurs
+     */
+    public Matrix readInto(Matrix matrix) throws IOException {
+        Checks.check(matrix.getRows() == rows && matrix.getColumns() == columns, "The sizes don't match");
+        for (int b = 0; b < blockOffsets.length - 1; b++) {
+            ByteBuffer block = readBlock(b);
+            int end = Math.min(rows, (b + 1) * rowsPerBlock);
+            for (int i = b * rowsPerBlock; i < end; i++) {
+                for (int j = symmetric ? i : 0; j < columns; j++) {
+                    double value = precision == Precision.FLOAT ? block.getFloat() : block.getDouble();
+                    matrix.set(i, j, value);
+                    if (symmetric && !matrix.isSymmetric()) {
+                        matrix.set(j, i, value);
+                    }
+                }
+            }
+        }
+        return matrix;
+    }
+
+    private ByteBuffer readBlock(int blockIndex) throws IOException {
+        int start = blockIndex * rowsPerBlock;
+        int end = Math.min(rows, start + rowsPerBlock);
+        int length = (int) (blockCells(start, end, columns, symmetric) * (precision == Precision.FLOAT ? 4 : 8));
+        long offset = blockOffsets[blockIndex];
+        ByteBuffer data = read(offset, (int) (blockOffsets[blockIndex + 1] - offset));
+        if (!compressed) {
+            return data;
+        }
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(data.array(), 0, data.limit());
+            byte[] block = new byte[length];
+            int count = 0;
+            while (count < length && !inflater.finished()) {
+                int inflated = inflater.inflate(block, count, length - count);
+                if (inflated == 0 && inflater.needsInput()) {
+                    throw new EOFException("Truncated block " + blockIndex);
+                }
+                count += inflated;
+            }
+            return ByteBuffer.wrap(block);
+        } catch (DataFormatException e) {
+            throw new IOException("Corrupt block " + blockIndex, e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    private ByteBuffer read(long offset, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, offset + buffer.position()) < 0) {
+                throw new EOFException("Unexpected end of matrix file");
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
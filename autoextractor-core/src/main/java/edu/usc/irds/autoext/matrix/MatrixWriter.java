@@ -0,0 +1,209 @@
+package edu.usc.irds.autoext.matrix;
+
+import edu.usc.irds.autoext.utils.Checks;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.zip.Deflater;
+
+/**
+ * Writes matrices in a compact binary format, row by row, without holding the matrix in memory.
+ * The rows are grouped in blocks which are optionally compressed, and the offsets of blocks are stored
+ * at the end of file, so that {@link MatrixReader} can read any row without reading the whole file.
+ * Only the upper triangle of the symmetric matrices is stored.
+ *
+ * <pre>
+ * header : magic, version, rows, columns, precision, symmetric, compressed, rows per block, index offset
+ * blocks : values of the rows in the block, big endian, deflated when compressed
+ * index  : offsets of the blocks followed by the offset of index
+ * </pre>
+ *
+ * @see MatrixReader
+ */
+public class MatrixWriter implements Closeable {
+
+    static final long MAGIC = 0x4155544f4d545258L; // AUTOMTRX
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 48;
+    public static final int DEFAULT_ROWS_PER_BLOCK = 64;
+
+    private final FileChannel channel;
+    private final int rows;
+    private final int columns;
+    private final Precision precision;
+    private final boolean symmetric;
+    private final boolean compressed;
+    private final int rowsPerBlock;
+    private final long[] blockOffsets;
+    private final Deflater deflater;
+    private ByteBuffer block;
+    private byte[] deflated;
+    private long position = HEADER_SIZE;
+    private int nextRow;
+
+    /**
+     * Creates a writer
+     * @param file the file, the existing file is overwritten
+     * @param rows number of rows
+     * @param columns number of columns
+     * @param precision precision of the stored values
+     * @param symmetric true to store only the upper triangle of a symmetric matrix
+     * @param compressed true to compress the blocks
+     * @throws IOException when an io error occurs
+     */
+    public MatrixWriter(File file, int rows, int columns, Precision precision,
+                        boolean symmetric, boolean compressed) throws IOException {
+        this(file, rows, columns, precision, symmetric, compressed, DEFAULT_ROWS_PER_BLOCK);
+    }
+
+    /**
+     * Creates a writer
+     * @param file the file, the existing file is overwritten
+     * @param rows number of rows
+     * @param columns number of columns
+     * @param precision precision of the stored values
+     * @param symmetric true to store only the upper triangle of a symmetric matrix
+     * @param compressed true to compress the blocks
+     * @param rowsPerBlock number of rows in a block
+     * @throws IOException when an io error occurs
+     */
+    public MatrixWriter(File file, int rows, int columns, Precision precision,
+                        boolean symmetric, boolean compressed, int rowsPerBlock) throws IOException {
+        Checks.check(rows >= 0 && columns >= 0, "The size can't be negative");
+        Checks.check(!symmetric || rows == columns, "The symmetric matrix should be square");
+        Checks.check(rowsPerBlock > 0, "rowsPerBlock should be positive");
+        this.rows = rows;
+        this.columns = columns;
+        this.precision = precision;
+        this.symmetric = symmetric;
+        this.compressed = compressed;
+        this.rowsPerBlock = rowsPerBlock;
+        this.blockOffsets = new long[(rows + rowsPerBlock - 1) / rowsPerBlock];
+        this.deflater = compressed ? new Deflater(Deflater.BEST_SPEED) : null;
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        raf.setLength(0);
+        this.channel = raf.getChannel();
+    }
+
+    /**
+     * Writes a matrix to a file. The matrix is stored as symmetric if it is
+     * @param matrix the matrix
+     * @param file the file
+     * @param compressed true to compress the blocks
+     * @throws IOException when an io error occurs
+     */
+    public static void write(Matrix matrix, File file, boolean compressed) throws IOException {
+        try (MatrixWriter writer = new MatrixWriter(file, matrix.getRows(), matrix.getColumns(),
+                matrix.getPrecision(), matrix.isSymmetric(), compressed)) {
+            double[] row = new double[matrix.getColumns()];
+            for (int i = 0; i < matrix.getRows(); i++) {
+                // the lower triangle is not stored
+                for (int j = matrix.isSymmetric() ? i : 0; j < row.length; j++) {
+                    row[j] = matrix.get(i, j);
+                }
+                writer.writeRow(row);
+            }
+        }
+    }
+
+    /**
+     * Writes the next row
+     * @param row the values of row. The values in the lower triangle of symmetric matrices are ignored
+     * @throws IOException when an io error occurs
+     */
+    public void writeRow(double[] row) throws IOException {
+        Checks.check(nextRow < rows, "All the rows are written");
+        Checks.check(row.length == columns, "The row should have " + columns + " values");
+        int blockStart = nextRow - nextRow % rowsPerBlock;
+        if (nextRow == blockStart) {
+            startBlock(blockStart);
+        }
+        for (int j = symmetric ? nextRow : 0; j < columns; j++) {
+            if (precision == Precision.FLOAT) {
+                block.putFloat((float) row[j]);
+            } else {
+                block.putDouble(row[j]);
+            }
+        }
+        nextRow++;
+        if (nextRow % rowsPerBlock == 0 || nextRow == rows) {
+            writeBlock(blockStart / rowsPerBlock);
+        }
+    }
+
+    private void startBlock(int blockStart) {
+        int capacity = (int) (MatrixReader.blockCells(blockStart, Math.min(rows, blockStart + rowsPerBlock),
+                columns, symmetric) * (precision == Precision.FLOAT ? 4 : 8));
+        if (block == null || block.capacity() < capacity) {
+            block = ByteBuffer.allocate(capacity);
+        }
+        block.clear();
+    }
+
+    private void writeBlock(int blockIndex) throws IOException {
+        block.flip();
+        blockOffsets[blockIndex] = position;
+        ByteBuffer data = block;
+        if (compressed) {
+            deflater.reset();
+            deflater.setInput(block.array(), 0, block.limit());
+            deflater.finish();
+            if (deflated == null || deflated.length < block.limit() + 64) {
+                deflated = new byte[block.limit() + block.limit() / 8 + 64];
+            }
+            int length = 0;
+            while (!deflater.finished()) {
+                if (length == deflated.length) {
+                    deflated = Arrays.copyOf(deflated, deflated.length * 2);
+                }
+                length += deflater.deflate(deflated, length, deflated.length - length);
+            }
+            data = ByteBuffer.wrap(deflated, 0, length);
+        }
+        position += writeFully(data, position);
+    }
+
+    private int writeFully(ByteBuffer buffer, long offset) throws IOException {
+        int length = buffer.remaining();
+        while (buffer.hasRemaining()) {
+            offset += channel.write(buffer, offset);
+        }
+        return length;
+    }
+
+    /**
+     * Writes the index and the header. All the rows must have been written
+     * @throws IOException when an io error occurs
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            Checks.check(nextRow == rows, "Only " + nextRow + " of " + rows + " rows are written");
+            ByteBuffer index = ByteBuffer.allocate((blockOffsets.length + 1) * 8);
+            for (long offset : blockOffsets) {
+                index.putLong(offset);
+            }
+            index.putLong(position);
+            index.flip();
+            long indexOffset = position;
+            position += writeFully(index, position);
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putLong(MAGIC).putInt(VERSION).putInt(rows).putInt(columns).putInt(precision.ordinal())
+                    .put((byte) (symmetric ? 1 : 0)).put((byte) (compressed ? 1 : 0)).putShort((short) 0)
+                    .putInt(rowsPerBlock).putLong(indexOffset);
+            header.clear();
+            writeFully(header, 0);
+        } finally {
+            if (deflater != null) {
+                deflater.end();
+            }
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,261 @@
+package edu.usc.irds.autoext.matrix;
+
+import edu.usc.irds.autoext.utils.Checks;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * A sparse form of a similarity matrix which keeps only the nearest neighbors of every item.
+ * A row keeps at most {@code k} items whose similarities are at least the threshold; the items with
+ * higher similarity are preferred and the ties are broken by the lower index, so the equally similar items
+ * are all kept, unlike the nearest neighbors found from a matrix by
+ * {@link edu.usc.irds.autoext.cluster.SharedNeighborClusterer#findNearestNeighbors(Matrix, int, double, int)}.
+ * The similarities are stored as floats, so they are compared with the threshold rounded to a float;
+ * otherwise a similarity equal to the threshold, e.g. 0.7, would be rounded below it and dropped.
+ * The lists take O(n x k) memory, so they can be filled while the pairs are computed without storing
+ * the n x n matrix. The different rows can be offered from different threads.
+ *
+ * @see edu.usc.irds.autoext.utils.ParallelMatrixBuilder#computeNeighborLists
+ */
+public class NeighborLists {
+
+    private static final int MAGIC = 0x4e42524c; // NBRL
+    private static final int VERSION = 1;
+    private static final int INITIAL_CAPACITY = 8;
+
+    private final int k;
+    private final double threshold;
+    private final Row[] rows;
+
+    /**
+     * Creates empty lists
+     * @param n number of items
+     * @param k maximum number of neighbors to be kept for an item
+     * @param threshold minimum similarity of neighbors
+     */
+    public NeighborLists(int n, int k, double threshold) {
+        Checks.check(n >= 0, "The size can't be negative");
+        Checks.check(k > 0, "k should be positive");
+        this.k = k;
+        this.threshold = threshold;
+        this.rows = new Row[n];
+        for (int i = 0; i < n; i++) {
+            rows[i] = new Row();
+        }
+    }
+
+    public int size() {
+        return rows.length;
+    }
+
+    public int getK() {
+        return k;
+    }
+
+    public double getThreshold() {
+        return threshold;
+    }
+
+    /**
+     * Offers a neighbor of an item. The neighbor is kept if it is one of the nearest k neighbors seen so far
+     * @param row index of the item
+     * @param column index of the neighbor
+     * @param similarity similarity of the item and the neighbor
+     */
+    public void offer(int row, int column, double similarity) {
+        if ((float) similarity >= (float) threshold) {
+            rows[row].offer(column, (float) similarity, k);
+        }
+    }
+
+    /**
+     * Gets the neighbors of an item
+     * @param row index of the item
+     * @return indices of the neighbors, the nearest first
+     */
+    public int[] getNeighbors(int row) {
+        Row sorted = rows[row].sorted();
+        return Arrays.copyOf(sorted.neighbors, sorted.size);
+    }
+
+    /**
+     * Gets the similarities of neighbors of an item
+     * @param row index of the item
+     * @return similarities in the same order as {@link #getNeighbors(int)}
+     */
+    public float[] getSimilarities(int row) {
+        Row sorted = rows[row].sorted();
+        return Arrays.copyOf(sorted.similarities, sorted.size);
+    }
+
+    /**
+     * Creates lists for more items, having the neighbors of the items in these lists.
+     * The rows are shared, so these lists should not be used after growing
+     * @param n number of items, not less than the current size
+     * @return the lists of size n
+     */
+    public NeighborLists grow(int n) {
+        Checks.check(n >= rows.length, "The lists can't shrink");
+        NeighborLists lists = new NeighborLists(n, k, threshold);
+        System.arraycopy(rows, 0, lists.rows, 0, rows.length);
+        return lists;
+    }
+
+    /**
+     * Writes the lists to a file. The file stores the count, indices and similarities of the neighbors
+     * of every item, which is about 8 x k bytes per item.
+     * @param file the file
+     * @throws IOException when an io error occurs
+     */
+    public void write(File file) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(file)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(rows.length);
+            out.writeInt(k);
+            out.writeDouble(threshold);
+            for (Row row : rows) {
+                row = row.sorted();
+                out.writeInt(row.size);
+                for (int i = 0; i < row.size; i++) {
+                    out.writeInt(row.neighbors[i]);
+                    out.writeFloat(row.similarities[i]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads the lists written by {@link #write(File)}
+     * @param file the file
+     * @return the lists
+     * @throws IOException when an io error occurs
+     */
+    public static NeighborLists read(File file) throws IOException {
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(file)))) {
+            Checks.check(in.readInt() == MAGIC, "Not a neighbors file :" + file);
+            Checks.check(in.readInt() == VERSION, "Unsupported neighbors file version :" + file);
+            int n = in.readInt();
+            int k = in.readInt();
+            NeighborLists lists = new NeighborLists(n, k, in.readDouble());
+            for (Row row : lists.rows) {
+                int size = in.readInt();
+                row.neighbors = new int[size];
+                row.similarities = new float[size];
+                for (int i = 0; i < size; i++) {
+                    row.neighbors[i] = in.readInt();
+                    row.similarities[i] = in.readFloat();
+                }
+                row.size = size;
+                row.heap = false;
+            }
+            return lists;
+        }
+    }
+
+    /**
+     * Neighbors of an item, kept in a heap of size k whose root is the farthest neighbor.
+     * The heap is sorted when the neighbors are read, and rebuilt if more neighbors are offered later.
+     */
+    private static class Row {
+        private int[] neighbors = new int[0];
+        private float[] similarities = new float[0];
+        private int size;
+        private boolean heap = true;
+
+        synchronized void offer(int neighbor, float similarity, int k) {
+            if (!heap) {
+                heapify();
+            }
+            if (size < k) {
+                if (size == neighbors.length) {
+                    int capacity = Math.min(k, Math.max(INITIAL_CAPACITY, size * 2));
+                    neighbors = Arrays.copyOf(neighbors, capacity);
+                    similarities = Arrays.copyOf(similarities, capacity);
+                }
+                neighbors[size] = neighbor;
+                similarities[size] = similarity;
+                siftUp(size++);
+            } else if (isFarther(neighbors[0], similarities[0], neighbor, similarity)) {
+                neighbors[0] = neighbor;
+                similarities[0] = similarity;
+                siftDown(0, size);
+            }
+        }
+
+        /**
+         * Sorts the neighbors, the nearest first
+         * @return this row
+         */
+        synchronized Row sorted() {
+            if (heap) {
+                // the farthest neighbors are moved to the end
+                for (int end = size - 1; end > 0; end--) {
+                    swap(0, end);
+                    siftDown(0, end);
+                }
+                heap = false;
+            }
+            return this;
+        }
+
+        private void heapify() {
+            for (int i = size / 2 - 1; i >= 0; i--) {
+                siftDown(i, size);
+            }
+            heap = true;
+        }
+
+        private void siftUp(int i) {
+            while (i > 0) {
+                int parent = (i - 1) / 2;
+                if (!isFarther(neighbors[i], similarities[i], neighbors[parent], similarities[parent])) {
+                    break;
+                }
+                swap(i, parent);
+                i = parent;
+            }
+        }
+
+        private void siftDown(int i, int end) {
+            while (true) {
+                int child = 2 * i + 1;
+                if (child >= end) {
+                    break;
+                }
+                if (child + 1 < end && isFarther(neighbors[child + 1], similarities[child + 1],
+                        neighbors[child], similarities[child])) {
+                    child++;
+                }
+                if (!isFarther(neighbors[child], similarities[child], neighbors[i], similarities[i])) {
+                    break;
+                }
+                swap(i, child);
+                i = child;
+            }
+        }
+
+        private void swap(int i, int j) {
+            int neighbor = neighbors[i];
+            neighbors[i] = neighbors[j];
+            neighbors[j] = neighbor;
+            float similarity = similarities[i];
+            similarities[i] = similarities[j];
+            similarities[j] = similarity;
+        }
+
+        private static boolean isFarther(int neighbor1, float similarity1, int neighbor2, float similarity2) {
+            return similarity1 < similarity2 || (similarity1 == similarity2 && neighbor1 > neighbor2);
+        }
+    }
+}
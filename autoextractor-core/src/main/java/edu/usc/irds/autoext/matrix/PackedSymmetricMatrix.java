@@ -0,0 +1,139 @@
+package edu.usc.irds.autoext.matrix;
+
+import edu.usc.irds.autoext.utils.Checks;
+
+/**
+ * A square symmetric matrix which stores only the upper triangle including the principal diagonal.
+ * The values are stored in float or double precision, in chunks of arrays, so the matrices
+ * having more than 2^31 cells can be stored. A matrix of n rows takes n(n+1)/2 cells, about a quarter of the
+ * memory of {@code double[n][n]} with the float precision.
+ * Setting (i, j) also sets (j, i).
+ */
+public class PackedSymmetricMatrix implements Matrix {
+
+    private static final int CHUNK_BITS = 24;
+    private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+    private final int n;
+    private final Precision precision;
+    private final float[][] floatChunks;
+    private final double[][] doubleChunks;
+
+    /**
+     * Creates a matrix of zeros with float precision
+     * @param n number of rows and columns
+     */
+    public PackedSymmetricMatrix(int n) {
+        this(n, Precision.FLOAT);
+    }
+
+    /**
+     * Creates a matrix of zeros
+     * @param n number of rows and columns
+     * @param precision precision of the values
+     */
+    public PackedSymmetricMatrix(int n, Precision precision) {
+        Checks.check(n >= 0, "The size can't be negative");
+        this.n = n;
+        this.precision = precision;
+        long cells = numCells(n);
+        int numChunks = (int) ((cells + CHUNK_SIZE - 1) >>> CHUNK_BITS);
+        if (precision == Precision.FLOAT) {
+            floatChunks = new float[numChunks][];
+            doubleChunks = null;
+            for (int c = 0; c < numChunks; c++) {
+                floatChunks[c] = new float[chunkLength(cells, c)];
+            }
+        } else {
+            doubleChunks = new double[numChunks][];
+            floatChunks = null;
+            for (int c = 0; c < numChunks; c++) {
+                doubleChunks[c] = new double[chunkLength(cells, c)];
+            }
+        }
+    }
+
+    /**
+     * Computes the number of cells in the packed upper triangle
+     * @param n number of rows and columns
+     * @return number of cells
+     */
+    static long numCells(int n) {
+        return (long) n * (n + 1) / 2;
+    }
+
+    private static int chunkLength(long cells, int chunk) {
+        return (int) Math.min(CHUNK_SIZE, cells - ((long) chunk << CHUNK_BITS));
+    }
+
+    /**
+     * Computes the position of the cell in the packed upper triangle
+     * @param i the row index
+     * @param j the column index
+     * @return position of the cell
+     */
+    private long position(int i, int j) {
+        return position(i, j, n);
+    }
+
+    /**
+     * Computes the position of the cell in the packed upper triangle of a symmetric matrix
+     * @param i the row index
+     * @param j the column index
+     * @param n number of rows and columns
+     * @return position of the cell
+     */
+    static long position(int i, int j, int n) {
+        if (i > j) {
+            int tmp = i;
+            i = j;
+            j = tmp;
+        }
+        if (i < 0 || j >= n) {
+            throw new IndexOutOfBoundsException("(" + i + ", " + j + ") is outside " + n + "x" + n);
+        }
+        // rows 0..i-1 have n, n-1, ... n-i+1 cells
+        return (long) i * n - (long) i * (i - 1) / 2 + (j - i);
+    }
+
+    @Override
+    public int getRows() {
+        return n;
+    }
+
+    @Override
+    public int getColumns() {
+        return n;
+    }
+
+    @Override
+    public double get(int i, int j) {
+        long pos = position(i, j);
+        int chunk = (int) (pos >>> CHUNK_BITS);
+        int offset = (int) (pos & CHUNK_MASK);
+        return floatChunks != null ? floatChunks[chunk][offset] : doubleChunks[chunk][offset];
+    }
+
+    @Override
+    public void set(int i, int j, double value) {
+        long pos = position(i, j);
+        int chunk = (int) (pos >>> CHUNK_BITS);
+        int offset = (int) (pos & CHUNK_MASK);
+        if (floatChunks != null) {
+            floatChunks[chunk][offset] = (float) value;
+        } else {
+            doubleChunks[chunk][offset] = value;
+        }
+    }
+
+    @Override
+    public boolean isSymmetric() {
+        return true;
+    }
+
+    @Override
+    public Precision getPrecision() {
+        return precision;
+    }
+}
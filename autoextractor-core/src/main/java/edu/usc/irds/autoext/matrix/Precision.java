@@ -0,0 +1,11 @@
+package edu.usc.irds.autoext.matrix;
+
+/**
+ * Precision of the values stored in a matrix
+ */
+public enum Precision {
+    /** 32 bit floating point values */
+    FLOAT,
+    /** 64 bit floating point values */
+    DOUBLE
+}
@@ -0,0 +1,115 @@
+package edu.usc.irds.autoext.tree;
+
+import edu.usc.irds.autoext.base.EditCost;
+import edu.usc.irds.autoext.base.EditDistanceComputer;
+import edu.usc.irds.autoext.utils.DistanceCache;
+import edu.usc.irds.autoext.utils.Hashing;
+
+/**
+ * Tree distance computer which looks up the distances in a {@link DistanceCache} before
+ * delegating the computation to another computer.
+ * The trees are identified by fingerprints computed from their structure hashes and sizes,
+ * so the distances computed for the same page structures in the earlier runs are reused when the
+ * cache is backed by a file.
+ * The distances computed by different measures are kept apart by the metric id.
+ *
+ * @see TreeNode#getStructureHash()
+ */
+public class CachedEditDistanceComputer implements EditDistanceComputer<TreeNode> {
+
+    private final EditDistanceComputer<TreeNode> delegate;
+    private final DistanceCache cache;
+    private final String metricName;
+    private final long metricId;
+    private final boolean symmetric;
+
+    /**
+     * Creates a cached computer. The metric is named by the delegate.
+     * @param delegate the computer to be used for the distances not found in cache
+     * @param cache the cache
+     * @see EditDistanceComputer#getMetricId()
+     */
+    public CachedEditDistanceComputer(EditDistanceComputer<TreeNode> delegate, DistanceCache cache) {
+        this(delegate, cache, delegate.getMetricId());
+    }
+
+    /**
+     * Creates a cached computer
+     * @param delegate the computer to be used for the distances not found in cache
+     * @param cache the cache
+     * @param metricName the name of distance metric, it must be changed whenever the distances
+     *                   computed by the delegate change
+     */
+    public CachedEditDistanceComputer(EditDistanceComputer<TreeNode> delegate, DistanceCache cache,
+                                      String metricName) {
+        this.delegate = delegate;
+        this.cache = cache;
+        this.metricName = metricName;
+        this.metricId = Hashing.hash(metricName);
+        this.symmetric = delegate.getCostMetric().isSymmetric();
+    }
+
+    @Override
+    public double computeDistance(TreeNode tree1, TreeNode tree2) {
+        long fp1 = fingerprint(tree1);
+        long fp2 = fingerprint(tree2);
+        if (symmetric && fp1 > fp2) {
+            long tmp = fp1;
+            fp1 = fp2;
+            fp2 = tmp;
+        }
+        double distance = cache.get(fp1, fp2, metricId);
+        if (Double.isNaN(distance)) {
+            distance = delegate.computeDistance(tree1, tree2);
+            cache.put(fp1, fp2, metricId, distance);
+        }
+        return distance;
+    }
+
+    @Override
+    public double computeDistance(TreeNode tree1, TreeNode tree2, double maxDistance) {
+        long fp1 = fingerprint(tree1);
+        long fp2 = fingerprint(tree2);
+        if (symmetric && fp1 > fp2) {
+            long tmp = fp1;
+            fp1 = fp2;
+            fp2 = tmp;
+        }
+        double distance = cache.get(fp1, fp2, metricId);
+        if (Double.isNaN(distance)) {
+            distance = delegate.computeDistance(tree1, tree2, maxDistance);
+            if (distance != DISTANCE_EXCEEDED) {
+                // only the exact distances are cached, the exceeded ones depend on the maximum
+                cache.put(fp1, fp2, metricId, distance);
+            }
+        }
+        return distance > maxDistance ? DISTANCE_EXCEEDED : distance;
+    }
+
+    @Override
+    public EditCost<TreeNode> getCostMetric() {
+        return delegate.getCostMetric();
+    }
+
+    @Override
+    public String getMetricId() {
+        return metricName;
+    }
+
+    /**
+     * Gets the cache used by this computer
+     * @return distance cache
+     */
+    public DistanceCache getCache() {
+        return cache;
+    }
+
+    /**
+     * Computes the fingerprint of tree
+     * @param tree the root of tree
+     * @return the fingerprint
+     */
+    public static long fingerprint(TreeNode tree) {
+        return Hashing.combine(tree.getStructureHash(), tree.getSize());
+    }
+}
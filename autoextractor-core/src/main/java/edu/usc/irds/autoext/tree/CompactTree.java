@@ -0,0 +1,270 @@
+package edu.usc.irds.autoext.tree;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * An immutable, array based representation of a {@link TreeNode} tree.
+ * All the nodes are laid out in post order and the properties required by the
+ * tree edit distance algorithms (labels, left most descendants, sizes and key roots)
+ * are stored in primitive arrays, so that the distance computation doesn't
+ * have to chase the pointers of the object graph.
+ *
+ * @see ZSTEDistance
+ */
+public class CompactTree {
+
+    private final TreeNode[] nodes;
+    private final int[] labels;
+    private final int[] leftMostDescendants;
+    private final int[] sizes;
+    private final long[] hashes;
+    private final int[] keyRoots;
+    private final boolean mirrored;
+    private final long keyRootCost;
+    private volatile int[] sortedLabels;
+    private volatile int[] sortedDegrees;
+
+    /**
+     * Creates a compact tree.
+     * The trees which are compared must have been built using the same {@link LabelDictionary}.
+     * @param root the root node of the tree
+     */
+    public CompactTree(TreeNode root) {
+        this(root, false);
+    }
+
+    /**
+     * Creates a compact tree.
+     * The trees which are compared must have been built using the same {@link LabelDictionary}.
+     * @param root the root node of the tree
+     * @param mirrored true to lay out the mirror image of the tree, i.e. the children are visited
+     *                 from right to left. The left paths of the mirrored tree are the right paths of the tree.
+     */
+    public CompactTree(TreeNode root, boolean mirrored) {
+        this.mirrored = mirrored;
+        List<TreeNode> postOrder = mirrored ? mirroredPostOrder(root) : root.postOrderTraverse();
+
+        int n = postOrder.size();
+        this.nodes = postOrder.toArray(new TreeNode[n]);
+        this.labels = new int[n];
+        this.leftMostDescendants = new int[n];
+        this.sizes = new int[n];
+        this.hashes = new long[n];
+        for (int i = 0; i < n; i++) {
+            TreeNode node = nodes[i];
+            labels[i] = node.getLabelId();
+            hashes[i] = node.getStructureHash();
+            int size = 1;
+            if (node.hasChildNodes()) {
+                // children are visited before the parent, (i - size) is the next child from the right
+                for (int c = 0; c < node.getChildren().size(); c++) {
+                    size += sizes[i - size];
+                }
+            }
+            sizes[i] = size;
+            leftMostDescendants[i] = i - size + 1;
+        }
+
+        // key root is the highest node on its left path, i.e. the first one seen from the right
+        boolean[] seen = new boolean[n];
+        int[] buffer = new int[n];
+        int count = 0;
+        for (int i = n - 1; i >= 0; i--) {
+            if (!seen[leftMostDescendants[i]]) {
+                seen[leftMostDescendants[i]] = true;
+                buffer[count++] = i;
+            }
+        }
+        this.keyRoots = new int[count];
+        long cost = 0;
+        for (int k = 0; k < count; k++) {
+            keyRoots[k] = buffer[count - 1 - k];
+            cost += sizes[keyRoots[k]];
+        }
+        this.keyRootCost = cost;
+    }
+
+    /**
+     * Traverses the mirror image of tree in post order, i.e. the children are visited from right to left
+     * @param root the root node of the tree
+     * @return the nodes in post order of the mirrored tree
+     */
+    private static List<TreeNode> mirroredPostOrder(TreeNode root) {
+        List<TreeNode> postOrder = new ArrayList<>(root.getSize());
+        // iterative post order traversal; (node, next child position) pairs on the stack
+        Deque<TreeNode> nodeStack = new ArrayDeque<>();
+        Deque<Integer> posStack = new ArrayDeque<>();
+        nodeStack.push(root);
+        posStack.push(0);
+        while (!nodeStack.isEmpty()) {
+            TreeNode node = nodeStack.peek();
+            int pos = posStack.pop();
+            if (node.hasChildNodes() && pos < node.getChildren().size()) {
+                posStack.push(pos + 1);
+                List<TreeNode> children = node.getChildren();
+                nodeStack.push(children.get(children.size() - 1 - pos));
+                posStack.push(0);
+            } else {
+                nodeStack.pop();
+                postOrder.add(node);
+            }
+        }
+        return postOrder;
+    }
+
+    /**
+     * Number of nodes in this tree
+     * @return size of tree
+     */
+    public int size() {
+        return nodes.length;
+    }
+
+    /**
+     * Gets the node at given post order index
+     * @param index post order index
+     * @return tree node
+     */
+    public TreeNode getNode(int index) {
+        return nodes[index];
+    }
+
+    /**
+     * Gets the integer label of node at given post order index
+     * @param index post order index
+     * @return label id
+     */
+    public int getLabel(int index) {
+        return labels[index];
+    }
+
+    /**
+     * Gets the post order index of left most descendant of a node
+     * @param index post order index of node
+     * @return post order index of the left most descendant
+     */
+    public int getLeftMostDescendant(int index) {
+        return leftMostDescendants[index];
+    }
+
+    /**
+     * Gets the size of subtree rooted at a node
+     * @param index post order index of node
+     * @return number of nodes in the subtree
+     */
+    public int getSize(int index) {
+        return sizes[index];
+    }
+
+    /**
+     * Checks if this is a mirror image of the tree
+     * @return true if the children were laid out from right to left
+     */
+    public boolean isMirrored() {
+        return mirrored;
+    }
+
+    /**
+     * Gets the sum of sizes of the subtrees rooted at key roots.
+     * Zhang-Shasha's algorithm computes as many forest distances for a pair of trees
+     * as the product of key root costs of both the trees.
+     * @return the key root cost
+     */
+    public long getKeyRootCost() {
+        return keyRootCost;
+    }
+
+    /**
+     * Gets the structure hash of subtree rooted at a node.
+     * The identical subtrees have same hash
+     * @param index post order index of node
+     * @return the structure hash
+     * @see TreeNode#getStructureHash()
+     */
+    public long getStructureHash(int index) {
+        return hashes[index];
+    }
+
+    /**
+     * Checks if the given tree is identical to this tree, i.e. both have same labels and same shape
+     * @param other the other tree
+     * @return true if identical, false otherwise
+     */
+    public boolean isIdentical(CompactTree other) {
+        return other.size() == size() && other.hashes[size() - 1] == hashes[size() - 1];
+    }
+
+    /**
+     * Gets the labels of all the nodes in sorted order, i.e. the label histogram
+     * @return sorted labels. The returned array is shared, it shall not be modified
+     */
+    public int[] getSortedLabels() {
+        if (sortedLabels == null) {
+            int[] sorted = labels.clone();
+            Arrays.sort(sorted);
+            sortedLabels = sorted;
+        }
+        return sortedLabels;
+    }
+
+    /**
+     * Gets the number of children of all the nodes in sorted order, i.e. the degree histogram
+     * @return sorted degrees. The returned array is shared, it shall not be modified
+     */
+    public int[] getSortedDegrees() {
+        if (sortedDegrees == null) {
+            int[] sorted = new int[nodes.length];
+            for (int i = 0; i < nodes.length; i++) {
+                sorted[i] = nodes[i].hasChildNodes() ? nodes[i].getChildren().size() : 0;
+            }
+            Arrays.sort(sorted);
+            sortedDegrees = sorted;
+        }
+        return sortedDegrees;
+    }
+
+    /**
+     * Gets the post order indices of key roots in increasing order.
+     * Key root is either the root or a node which has a left sibling.
+     * @return key root indices. The returned array is shared, it shall not be modified
+     */
+    int[] keyRoots() {
+        return keyRoots;
+    }
+
+    /**
+     * Gets the structure hashes in post order.
+     * @return hashes array. The returned array is shared, it shall not be modified
+     */
+    long[] hashes() {
+        return hashes;
+    }
+
+    /**
+     * Gets the labels in post order.
+     * @return labels array. The returned array is shared, it shall not be modified
+     */
+    int[] labels() {
+        return labels;
+    }
+
+    /**
+     * Gets the left most descendants in post order.
+     * @return the left most descendant array. The returned array is shared, it shall not be modified
+     */
+    int[] leftMostDescendants() {
+        return leftMostDescendants;
+    }
+
+    /**
+     * Gets the nodes in post order.
+     * @return the nodes array. The returned array is shared, it shall not be modified
+     */
+    TreeNode[] nodes() {
+        return nodes;
+    }
+}
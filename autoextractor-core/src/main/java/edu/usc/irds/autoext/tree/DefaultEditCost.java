@@ -12,6 +12,7 @@ public class DefaultEditCost implements EditCost<TreeNode> {
     private int replaceCost = 1;
     private int noEditCost = 0;
     private int maxEditCost = replaceCost;
+    private int minEditCost = Math.min(replaceCost, Math.min(insertCost, removeCost));
 
     @Override
     public double getInsertCost(TreeNode node) {
@@ -38,8 +39,39 @@ public class DefaultEditCost implements EditCost<TreeNode> {
         return maxEditCost;
     }
 
+    @Override
+    public double getMinUnitCost() {
+        return minEditCost;
+    }
+
     @Override
     public boolean isSymmetric() {
         return true;
     }
+
+    /**
+     * Checks if the given cost metric has the integral and label independent costs of this class,
+     * in which case the costs can be obtained from the int accessors of this class
+     * @param cost the cost metric
+     * @return true if the metric is an instance of this class and not a sub class of it
+     */
+    static boolean isIntegral(EditCost<TreeNode> cost) {
+        return cost != null && cost.getClass() == DefaultEditCost.class;
+    }
+
+    int insertCost() {
+        return insertCost;
+    }
+
+    int removeCost() {
+        return removeCost;
+    }
+
+    int replaceCost() {
+        return replaceCost;
+    }
+
+    int noEditCost() {
+        return noEditCost;
+    }
 }
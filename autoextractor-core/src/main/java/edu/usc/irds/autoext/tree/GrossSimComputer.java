@@ -1,5 +1,6 @@
 package edu.usc.irds.autoext.tree;
 
+import edu.usc.irds.autoext.base.EditDistanceComputer;
 import edu.usc.irds.autoext.base.SimilarityComputer;
 import edu.usc.irds.autoext.utils.Checks;
 
@@ -55,9 +56,32 @@ public class GrossSimComputer<T> implements SimilarityComputer<T> {
      * @return the similarity computer that internally aggregates structure and style measures;
      */
     public static GrossSimComputer<TreeNode> createWebSimilarityComputer(double structureSimWeight){
+        return createWebSimilarityComputer(structureSimWeight, new ZSTEDComputer());
+    }
+
+    /**
+     * A factory method for creating similarity computer that aggregates structural and stylistic measures
+     * @param structureSimWeight The fraction weight of weight for structural similarity.
+     *                           The remaining fraction, i.e. (1 - weight), will be taken as weight for style similarity
+     * @param edComputer the tree edit distance computer to be used for structural similarity
+     * @return the similarity computer that internally aggregates structure and style measures;
+     */
+    public static GrossSimComputer<TreeNode> createWebSimilarityComputer(double structureSimWeight,
+                                                                         EditDistanceComputer<TreeNode> edComputer){
+        return createWebSimilarityComputer(structureSimWeight, new StructureSimComputer(edComputer));
+    }
+
+    /**
+     * A factory method for creating similarity computer that aggregates structural and stylistic measures
+     * @param structureSimWeight The fraction weight of weight for structural similarity.
+     *                           The remaining fraction, i.e. (1 - weight), will be taken as weight for style similarity
+     * @param structSimComputer the structural similarity computer
+     * @return the similarity computer that internally aggregates structure and style measures;
+     * @see SimpleTreeMatchingComputer
+     */
+    public static GrossSimComputer<TreeNode> createWebSimilarityComputer(double structureSimWeight,
+                                                                         SimilarityComputer<TreeNode> structSimComputer){
         Checks.check(structureSimWeight <= 1.0 && structureSimWeight >= 0.0, "The weight should be in between [0.0, 1.0]");
-        ZSTEDComputer edComputer = new ZSTEDComputer();
-        StructureSimComputer structSimComputer = new StructureSimComputer(edComputer);
         StyleSimComputer styleSimComputer = new StyleSimComputer();
         List<SimilarityComputer<TreeNode>> similarityComputers = Arrays.asList(structSimComputer, styleSimComputer);
         List<Double> weights = Arrays.asList(structureSimWeight, 1.0 - structureSimWeight);
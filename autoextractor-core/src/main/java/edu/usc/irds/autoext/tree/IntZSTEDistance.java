@@ -0,0 +1,217 @@
+package edu.usc.irds.autoext.tree;
+
+import static java.lang.Math.min;
+
+/**
+ * Zhang - Shasha's Tree edit distance specialized for integral and label independent edit costs.
+ * The costs are inlined into the dynamic programming loops and the distance matrices are
+ * {@code int} arrays, which halves the memory footprint of {@link ZSTEDistance} and avoids
+ * the virtual calls to the cost metric for every cell.
+ * <p>
+ * Since the costs do not depend on the labels, the tree distances between the left paths of
+ * a pair of identical subtrees are known without running the forest distance computation:
+ * the subtrees rooted on the left path of a tree are nested, so the distance between any two of them
+ * is their size difference times the cost of removing or inserting a node. The pages generated from
+ * a template share the header, footer and navigation subtrees, such pairs are recognized by their
+ * structure hashes and filled in directly.
+ * </p>
+ * @see ZSTEDistance
+ * @see ZSTEDComputer
+ */
+public class IntZSTEDistance {
+
+    /**
+     * Distance of the subtree pairs which are outside the band; large enough to never win
+     * and small enough to not overflow when added to the forest distances
+     */
+    private static final int OUT_OF_BAND = Integer.MAX_VALUE / 4;
+
+    private final CompactTree iTree;
+    private final CompactTree jTree;
+    private final int[] iLabels;
+    private final int[] jLabels;
+    private final int[] iLs;
+    private final int[] jLs;
+    private final long[] iHashes;
+    private final long[] jHashes;
+    private final int jSize;
+    private final int insertCost;
+    private final int removeCost;
+    private final int replaceCost;
+    private final int noEditCost;
+    private int[] treeDist;
+    private int[] fd;
+    private int band = Integer.MAX_VALUE;
+
+    /**
+     * Creates a Edit distance matrix for given compact trees.
+     * Both the trees must have been built using same label dictionary.
+     * @param iTree first tree
+     * @param jTree second tree
+     * @param cost costs for edit operations
+     */
+    public IntZSTEDistance(CompactTree iTree, CompactTree jTree, DefaultEditCost cost) {
+        this(iTree, jTree, cost.insertCost(), cost.removeCost(), cost.replaceCost(), cost.noEditCost());
+    }
+
+    /**
+     * Creates a Edit distance matrix for given compact trees.
+     * Both the trees must have been built using same label dictionary.
+     * @param iTree first tree
+     * @param jTree second tree
+     * @param insertCost cost of inserting a node
+     * @param removeCost cost of removing a node
+     * @param replaceCost cost of replacing a node with a node having a different label
+     * @param noEditCost cost of matching the nodes having same label
+     */
+    public IntZSTEDistance(CompactTree iTree, CompactTree jTree,
+                           int insertCost, int removeCost, int replaceCost, int noEditCost) {
+        this.iTree = iTree;
+        this.jTree = jTree;
+        this.iLabels = iTree.labels();
+        this.jLabels = jTree.labels();
+        this.iLs = iTree.leftMostDescendants();
+        this.jLs = jTree.leftMostDescendants();
+        this.iHashes = iTree.hashes();
+        this.jHashes = jTree.hashes();
+        this.jSize = jTree.size();
+        this.insertCost = insertCost;
+        this.removeCost = removeCost;
+        this.replaceCost = replaceCost;
+        this.noEditCost = noEditCost;
+    }
+
+    /**
+     * Computes and returns edit distance
+     * @return min edit distance between trees
+     */
+    public int compute() {
+        return compute(Integer.MAX_VALUE);
+    }
+
+    /**
+     * Computes edit distance by considering only the pairs of nodes whose post order indices differ
+     * by at most {@code band}.
+     * @param band maximum difference between post order indices of the matched nodes
+     * @return min edit distance between trees, or a value larger than that when it exceeds the band
+     * @see ZSTEDistance#compute(int)
+     */
+    public int compute(int band) {
+        if (noEditCost == 0 && iTree.isIdentical(jTree)) {
+            // identity mapping costs nothing
+            return 0;
+        }
+        this.band = band;
+        ZSTEDWorkspace workspace = ZSTEDWorkspace.get();
+        this.treeDist = workspace.intTreeDist(iTree.size() * jSize);
+        this.fd = workspace.intForestDist((iTree.size() + 1) * (jSize + 1));
+        int[] iKeyRoots = iTree.keyRoots();
+        int[] jKeyRoots = jTree.keyRoots();
+        // identity mapping of identical subtrees is free only when matching costs nothing
+        boolean skipIdentical = noEditCost == 0;
+        for (int i : iKeyRoots) {
+            for (int j : jKeyRoots) {
+                if (iLs[i] - j > band || jLs[j] - i > band) {
+                    continue;
+                }
+                if (skipIdentical && iHashes[i] == jHashes[j] && i - iLs[i] == j - jLs[j]) {
+                    identicalPathDistances(i, j);
+                } else {
+                    treeDistance(i, j);
+                }
+            }
+        }
+        int distance = this.treeDist[iTree.size() * jSize - 1];
+        this.treeDist = null;
+        this.fd = null;
+        return distance;
+    }
+
+    /**
+     * Computes Tree distance between ith node and jth node
+     * @param i index of first node
+     * @param j index of second node
+     */
+    private void treeDistance(int i, int j) {
+        int m = i - iLs[i] + 2;
+        int n = j - jLs[j] + 2;
+        int fd[] = this.fd;
+        int iOffset = iLs[i] - 1;
+        int jOffset = jLs[j] - 1;
+        int jl = jLs[j];
+
+        fd[0] = 0;
+        for (int x = 1; x < m; x++) {
+            fd[x * n] = fd[(x - 1) * n] + removeCost;
+        }
+        for (int y = 1; y < n; y++) {
+            fd[y] = fd[y - 1] + insertCost;
+        }
+
+        for (int x = 1; x < m; x++) {
+            int ix = x + iOffset;
+            int iLabel = iLabels[ix];
+            int row = ix * jSize;
+            int cur = x * n;
+            int prev = cur - n;
+            int pRow = (iLs[ix] - 1 - iOffset) * n - jOffset - 1;
+            if (iLs[i] == iLs[ix]) {
+                // x is on the left path of i
+                for (int y = 1; y < n; y++) {
+                    int jy = y + jOffset;
+                    int best = min(fd[prev + y] + removeCost, fd[cur + y - 1] + insertCost);
+                    if (jl == jLs[jy]) {
+                        best = min(best, fd[prev + y - 1] + (iLabel == jLabels[jy] ? noEditCost : replaceCost));
+                        treeDist[row + jy] = best;
+                    } else {
+                        best = min(best, fd[pRow + jLs[jy]] + subTreeDist(ix, jy, row));
+                    }
+                    fd[cur + y] = best;
+                }
+            } else {
+                for (int y = 1; y < n; y++) {
+                    int jy = y + jOffset;
+                    fd[cur + y] = min(min(fd[prev + y] + removeCost, fd[cur + y - 1] + insertCost),
+                            fd[pRow + jLs[jy]] + subTreeDist(ix, jy, row));
+                }
+            }
+        }
+    }
+
+    /**
+     * Fills the tree distances between the nodes on the left paths of a pair of key roots
+     * having identical subtrees, i.e. the tree distances computed by {@link #treeDistance(int, int)}.
+     * The subtrees rooted on a left path are nested, the smaller one is obtained by removing
+     * the extra nodes of the larger one and at least that many nodes have to be removed or inserted.
+     * @param i index of first node
+     * @param j index of second node
+     */
+    private void identicalPathDistances(int i, int j) {
+        int il = iLs[i];
+        int jl = jLs[j];
+        for (int x = il; x <= i; x++) {
+            if (iLs[x] != il) {
+                continue;
+            }
+            int xSize = x - il + 1;
+            int row = x * jSize;
+            for (int y = jl; y <= j; y++) {
+                if (jLs[y] == jl) {
+                    int ySize = y - jl + 1;
+                    treeDist[row + y] = xSize >= ySize ? (xSize - ySize) * removeCost : (ySize - xSize) * insertCost;
+                }
+            }
+        }
+    }
+
+    /**
+     * Gets the distance between subtrees computed by the earlier key root pairs
+     * @param ix index of the node in first tree
+     * @param jy index of the node in second tree
+     * @param row offset of the row of {@code ix} in tree distance matrix
+     * @return the distance between subtrees
+     */
+    private int subTreeDist(int ix, int jy, int row) {
+        return Math.abs(ix - jy) > band ? OUT_OF_BAND : treeDist[row + jy];
+    }
+}
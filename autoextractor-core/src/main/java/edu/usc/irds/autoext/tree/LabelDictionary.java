@@ -0,0 +1,71 @@
+package edu.usc.irds.autoext.tree;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A dictionary which maps the node labels (tag names) to dense integer ids.
+ * The trees built with the same dictionary share a single copy of every label string
+ * and their labels can be compared by the ids.
+ * This class is thread safe.
+ *
+ * @see TreeNode#getLabelId()
+ */
+public class LabelDictionary {
+
+    private static final LabelDictionary DEFAULT = new LabelDictionary();
+
+    private final Map<String, Integer> ids = new ConcurrentHashMap<>();
+    private volatile String[] labels = new String[64];
+    private int size;
+
+    /**
+     * Gets the dictionary shared by all the trees in this JVM, unless they were built with a different dictionary
+     * @return the default dictionary
+     */
+    public static LabelDictionary getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * Gets the id of label, assigns a new id when the label is seen for the first time
+     * @param label the label
+     * @return id of label
+     */
+    public int getId(String label) {
+        Integer id = ids.get(label);
+        if (id == null) {
+            id = ids.computeIfAbsent(label, this::add);
+        }
+        return id;
+    }
+
+    private synchronized int add(String label) {
+        if (size == labels.length) {
+            labels = Arrays.copyOf(labels, size * 2);
+        }
+        String[] current = labels;
+        current[size] = label;
+        // volatile write publishes the new label to the readers
+        labels = current;
+        return size++;
+    }
+
+    /**
+     * Gets the label of given id
+     * @param id the label id
+     * @return the label
+     */
+    public String getLabel(int id) {
+        return labels[id];
+    }
+
+    /**
+     * Gets the number of labels in this dictionary
+     * @return the number of labels
+     */
+    public synchronized int size() {
+        return size;
+    }
+}
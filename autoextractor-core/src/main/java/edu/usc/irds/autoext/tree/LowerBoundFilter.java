@@ -0,0 +1,94 @@
+package edu.usc.irds.autoext.tree;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A chain of lower bounds on tree edit distance. The bounds are evaluated in the given order,
+ * cheapest should go first, and the evaluation stops at the first bound which exceeds the maximum distance.
+ * The pairs pruned by each bound are counted.
+ *
+ * @see TreeLowerBound
+ * @see ZSTEDComputer#computeDistance(CompactTree, CompactTree, double)
+ */
+public class LowerBoundFilter {
+
+    private final List<TreeLowerBound> bounds;
+    private final List<String> names;
+    private final AtomicLong[] prunedCounts;
+    private final AtomicLong checkedCount = new AtomicLong();
+
+    /**
+     * Creates a chain of lower bounds
+     * @param bounds the lower bounds
+     * @param names names of the bounds, used for reporting the counts
+     */
+    public LowerBoundFilter(List<TreeLowerBound> bounds, List<String> names) {
+        this.bounds = bounds;
+        this.names = names;
+        this.prunedCounts = new AtomicLong[bounds.size()];
+        for (int i = 0; i < prunedCounts.length; i++) {
+            prunedCounts[i] = new AtomicLong();
+        }
+    }
+
+    /**
+     * Creates the default chain of size, label histogram and degree histogram bounds
+     * @return lower bound filter
+     */
+    public static LowerBoundFilter createDefault() {
+        return new LowerBoundFilter(
+                Arrays.asList(TreeLowerBound.SIZE, TreeLowerBound.LABEL_HISTOGRAM, TreeLowerBound.DEGREE_HISTOGRAM),
+                Arrays.asList("size", "label-histogram", "degree-histogram"));
+    }
+
+    /**
+     * Checks if the distance between trees is provably more than the maximum distance
+     * @param tree1 the first tree
+     * @param tree2 the second tree
+     * @param maxDistance the maximum distance
+     * @param minUnitCost minimum cost of an edit operation
+     * @return true if any of the lower bounds exceeds the maximum distance; false otherwise
+     */
+    public boolean prune(CompactTree tree1, CompactTree tree2, double maxDistance, double minUnitCost) {
+        checkedCount.incrementAndGet();
+        if (minUnitCost <= 0.0) {
+            return false;
+        }
+        for (int i = 0; i < bounds.size(); i++) {
+            if (bounds.get(i).lowerBound(tree1, tree2) * minUnitCost > maxDistance) {
+                prunedCounts[i].incrementAndGet();
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Gets the number of pairs checked by this filter
+     * @return number of pairs
+     */
+    public long getCheckedCount() {
+        return checkedCount.get();
+    }
+
+    /**
+     * Gets the number of pairs pruned by each bound
+     * @return map of bound name to number of pairs pruned
+     */
+    public Map<String, Long> getPrunedCounts() {
+        Map<String, Long> counts = new LinkedHashMap<>();
+        for (int i = 0; i < names.size(); i++) {
+            counts.put(names.get(i), prunedCounts[i].get());
+        }
+        return counts;
+    }
+
+    @Override
+    public String toString() {
+        return "LowerBoundFilter{checked=" + getCheckedCount() + ", pruned=" + getPrunedCounts() + "}";
+    }
+}
@@ -0,0 +1,182 @@
+package edu.usc.irds.autoext.tree;
+
+import edu.usc.irds.autoext.base.EditCost;
+import edu.usc.irds.autoext.base.EditDistanceComputer;
+import edu.usc.irds.autoext.utils.Checks;
+import edu.usc.irds.autoext.utils.Hashing;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Approximates the tree edit distance using pq-gram profiles.
+ * The pq-gram profile of a tree is a bag of small subtrees of a fixed shape (p ancestors and q children)
+ * which is computed once per tree and stored as a sorted array of hashes,
+ * so the distance between a pair of trees is computed by a linear merge of their profiles.
+ *
+ * The pq-gram distance is normalized to [0.0, 1.0] and then scaled with the sizes of trees and the
+ * maximum unit cost, so that {@link StructureSimComputer} converts it to the normalized pq-gram similarity
+ * {@code 2|P1 ∩ P2| / (|P1| + |P2|)}.
+ *
+ * <br/>
+ * <h1>References :</h1>
+ * <pre>
+ *     N. Augsten, M. Böhlen, and J. Gamper. 2005. Approximate matching of hierarchical data using pq-grams. In Proceedings of the 31st international conference on Very large data bases (VLDB '05), 301-312.
+ * </pre>
+ * @see ZSTEDComputer
+ */
+public class PQGramComputer implements EditDistanceComputer<TreeNode> {
+
+    /**
+     * Hash of the dummy label '*' used for padding the stems and bases
+     */
+    private static final long NULL_LABEL = 0x9E3779B97F4A7C15L;
+
+    private final int p;
+    private final int q;
+    private final EditCost<TreeNode> costMetric = new DefaultEditCost();
+
+    /**
+     * Creates pq-gram computer with p=2 and q=3
+     */
+    public PQGramComputer() {
+        this(2, 3);
+    }
+
+    /**
+     * Creates pq-gram computer
+     * @param p number of ancestors in the stem of pq-gram, including the anchor node
+     * @param q number of children in the base of pq-gram
+     */
+    public PQGramComputer(int p, int q) {
+        Checks.check(p > 0 && q > 0, "p and q should be positive");
+        this.p = p;
+        this.q = q;
+    }
+
+    @Override
+    public double computeDistance(TreeNode tree1, TreeNode tree2) {
+        long[] profile1 = getProfile(tree1);
+        long[] profile2 = getProfile(tree2);
+        int total = profile1.length + profile2.length;
+        double distance = (total - 2.0 * countIntersection(profile1, profile2)) / total;
+        return distance * costMetric.getMaxUnitCost() * (tree1.getSize() + tree2.getSize());
+    }
+
+    @Override
+    public EditCost<TreeNode> getCostMetric() {
+        return costMetric;
+    }
+
+    @Override
+    public String getMetricId() {
+        return EditDistanceComputer.super.getMetricId() + ":p=" + p + ",q=" + q;
+    }
+
+    /**
+     * Gets the pq-gram profile of the tree. The profiles are computed once and cached
+     * in the features of tree.
+     * @param tree the root of tree
+     * @return sorted hashes of pq-grams
+     * @see TreeNode#getFeatures()
+     */
+    public long[] getProfile(TreeNode tree) {
+        return tree.getFeatures().getPQGramProfile(p, q, this::computeProfile);
+    }
+
+    /**
+     * Computes the pq-gram profile of the tree
+     * @param tree the root of tree
+     * @return sorted hashes of pq-grams
+     */
+    public long[] computeProfile(TreeNode tree) {
+        long[] grams = new long[Math.max(16, tree.getSize() * 2)];
+        int count = 0;
+        Deque<TreeNode> nodes = new ArrayDeque<>();
+        Deque<long[]> stems = new ArrayDeque<>();
+        nodes.push(tree);
+        long[] rootStem = new long[p];
+        Arrays.fill(rootStem, NULL_LABEL);
+        stems.push(shift(rootStem, labelHash(tree)));
+
+        long[] base = new long[q];
+        while (!nodes.isEmpty()) {
+            TreeNode node = nodes.pop();
+            long[] stem = stems.pop();
+            long stemHash = hash(stem, 0L);
+            List<TreeNode> children = node.getChildren();
+            int numGrams = node.hasChildNodes() ? children.size() + q - 1 : 1;
+            if (count + numGrams > grams.length) {
+                grams = Arrays.copyOf(grams, Math.max(grams.length * 2, count + numGrams));
+            }
+            Arrays.fill(base, NULL_LABEL);
+            if (!node.hasChildNodes()) {
+                grams[count++] = hash(base, stemHash);
+                continue;
+            }
+            for (int i = 0; i < children.size(); i++) {
+                TreeNode child = children.get(i);
+                long childLabel = labelHash(child);
+                shiftInPlace(base, childLabel);
+                grams[count++] = hash(base, stemHash);
+                nodes.push(child);
+                stems.push(shift(stem, childLabel));
+            }
+            for (int i = 1; i < q; i++) {
+                shiftInPlace(base, NULL_LABEL);
+                grams[count++] = hash(base, stemHash);
+            }
+        }
+        long[] profile = Arrays.copyOf(grams, count);
+        Arrays.sort(profile);
+        return profile;
+    }
+
+    /**
+     * Counts the size of intersection of two bags
+     * @param sorted1 first bag in sorted order
+     * @param sorted2 second bag in sorted order
+     * @return size of bag intersection
+     */
+    public static int countIntersection(long[] sorted1, long[] sorted2) {
+        int i = 0, j = 0, common = 0;
+        while (i < sorted1.length && j < sorted2.length) {
+            if (sorted1[i] == sorted2[j]) {
+                common++;
+                i++;
+                j++;
+            } else if (sorted1[i] < sorted2[j]) {
+                i++;
+            } else {
+                j++;
+            }
+        }
+        return common;
+    }
+
+    private static long labelHash(TreeNode node) {
+        return Hashing.mix(node.getNodeName().hashCode());
+    }
+
+    private static long[] shift(long[] register, long value) {
+        long[] result = new long[register.length];
+        System.arraycopy(register, 1, result, 0, register.length - 1);
+        result[result.length - 1] = value;
+        return result;
+    }
+
+    private static void shiftInPlace(long[] register, long value) {
+        System.arraycopy(register, 1, register, 0, register.length - 1);
+        register[register.length - 1] = value;
+    }
+
+    private static long hash(long[] values, long seed) {
+        long hash = seed;
+        for (long value : values) {
+            hash = Hashing.combine(hash, value);
+        }
+        return hash;
+    }
+}
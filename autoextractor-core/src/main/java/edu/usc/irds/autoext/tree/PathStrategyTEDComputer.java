@@ -0,0 +1,143 @@
+package edu.usc.irds.autoext.tree;
+
+import edu.usc.irds.autoext.base.EditCost;
+import edu.usc.irds.autoext.base.EditDistanceComputer;
+
+/**
+ * Tree edit distance computer which picks the cheapest path decomposition strategy for every pair of subtrees.
+ * Zhang-Shasha's algorithm always decomposes the trees along left paths, which is
+ * expensive for the right heavy trees (for example the deeply nested last children in the
+ * nested table and div soup pages), and mirroring the trees only helps when they are right heavy throughout.
+ * This computer counts the sub problems of the cheapest strategy of {@link PathStrategyTEDistance}, which
+ * chooses the left or right path of either tree for every pair of subtrees, and uses it when it is cheaper
+ * than running {@link ZSTEDComputer} on the trees or on their mirror images.
+ * The distances are same as the ones computed by {@link ZSTEDComputer}.
+ *
+ * <br/>
+ * <h1>References :</h1>
+ * <pre>
+ *     M. Pawlik and N. Augsten. 2011. RTED: a robust algorithm for the tree edit distance. Proc. VLDB Endow. 5, 4 (December 2011), 334-345.
+ * </pre>
+ * @see PathStrategyTEDistance
+ * @see ZSTEDComputer
+ */
+public class PathStrategyTEDComputer implements EditDistanceComputer<TreeNode> {
+
+    private final ZSTEDComputer zsComputer;
+
+    public PathStrategyTEDComputer() {
+        this(new ZSTEDComputer());
+    }
+
+    /**
+     * Creates a computer
+     * @param zsComputer the Zhang-Shasha computer to be used when one of its strategies is the cheapest
+     */
+    public PathStrategyTEDComputer(ZSTEDComputer zsComputer) {
+        this.zsComputer = zsComputer;
+    }
+
+    /**
+     * Gets the lower bound filter used by this computer
+     * @return lower bound filter, may be null
+     * @see ZSTEDComputer#getLowerBoundFilter()
+     */
+    public LowerBoundFilter getLowerBoundFilter() {
+        return zsComputer.getLowerBoundFilter();
+    }
+
+    @Override
+    public double computeDistance(TreeNode tree1, TreeNode tree2) {
+        CompactTree left1 = zsComputer.compact(tree1, false);
+        CompactTree left2 = zsComputer.compact(tree2, false);
+        CompactTree right1 = zsComputer.compact(tree1, true);
+        CompactTree right2 = zsComputer.compact(tree2, true);
+        return computeDistance(left1, left2, right1, right2);
+    }
+
+    @Override
+    public double computeDistance(TreeNode tree1, TreeNode tree2, double maxDistance) {
+        CompactTree left1 = zsComputer.compact(tree1, false);
+        CompactTree left2 = zsComputer.compact(tree2, false);
+        CompactTree right1 = zsComputer.compact(tree1, true);
+        CompactTree right2 = zsComputer.compact(tree2, true);
+        PathStrategyTEDistance distance = createDistance(left1, left2, right1, right2);
+        if (distance == null) {
+            // the bounds and bands of Zhang-Shasha's algorithm
+            return isRightPathCheaper(left1, left2, right1, right2)
+                    ? zsComputer.computeDistance(right1, right2, maxDistance)
+                    : zsComputer.computeDistance(left1, left2, maxDistance);
+        }
+        double minUnitCost = getCostMetric().getMinUnitCost();
+        LowerBoundFilter filter = getLowerBoundFilter();
+        if (minUnitCost > 0.0 && filter != null && filter.prune(left1, left2, maxDistance, minUnitCost)) {
+            return DISTANCE_EXCEEDED;
+        }
+        double result = distance.compute();
+        return result > maxDistance ? DISTANCE_EXCEEDED : result;
+    }
+
+    /**
+     * Computes the distance using the cheapest path strategy
+     * @param left1 first tree
+     * @param left2 second tree
+     * @param right1 mirror image of first tree
+     * @param right2 mirror image of second tree
+     * @return the edit distance
+     */
+    public double computeDistance(CompactTree left1, CompactTree left2,
+                                  CompactTree right1, CompactTree right2) {
+        PathStrategyTEDistance distance = createDistance(left1, left2, right1, right2);
+        if (distance != null) {
+            return distance.compute();
+        } else if (isRightPathCheaper(left1, left2, right1, right2)) {
+            return zsComputer.computeDistance(right1, right2);
+        } else {
+            return zsComputer.computeDistance(left1, left2);
+        }
+    }
+
+    /**
+     * Creates the distance matrix with the cheapest strategy for every pair of subtrees,
+     * if it is cheaper than both the left path and right path strategies of Zhang-Shasha's algorithm
+     * @param left1 first tree
+     * @param left2 second tree
+     * @param right1 mirror image of first tree
+     * @param right2 mirror image of second tree
+     * @return the distance matrix, null when Zhang-Shasha's algorithm is as cheap
+     */
+    private PathStrategyTEDistance createDistance(CompactTree left1, CompactTree left2,
+                                                  CompactTree right1, CompactTree right2) {
+        if (left1.isIdentical(left2)) {
+            return null;
+        }
+        PathStrategyTEDistance distance = new PathStrategyTEDistance(left1, right1, left2, right2, getCostMetric());
+        double zsCost = Math.min((double) left1.getKeyRootCost() * left2.getKeyRootCost(),
+                (double) right1.getKeyRootCost() * right2.getKeyRootCost());
+        return distance.getStrategyCost() < zsCost ? distance : null;
+    }
+
+    /**
+     * Compares the number of sub problems of left path and right path strategies
+     * @param left1 first tree
+     * @param left2 second tree
+     * @param right1 mirror image of first tree
+     * @param right2 mirror image of second tree
+     * @return true if the right path strategy is cheaper than the left path strategy
+     */
+    public static boolean isRightPathCheaper(CompactTree left1, CompactTree left2,
+                                             CompactTree right1, CompactTree right2) {
+        return right1.getKeyRootCost() * right2.getKeyRootCost()
+                < left1.getKeyRootCost() * left2.getKeyRootCost();
+    }
+
+    @Override
+    public EditCost<TreeNode> getCostMetric() {
+        return zsComputer.getCostMetric();
+    }
+
+    @Override
+    public String getMetricId() {
+        return getClass().getName() + ":" + zsComputer.getMetricId();
+    }
+}
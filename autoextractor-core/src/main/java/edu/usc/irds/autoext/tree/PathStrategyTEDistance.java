@@ -0,0 +1,483 @@
+package edu.usc.irds.autoext.tree;
+
+import edu.usc.irds.autoext.base.EditCost;
+import edu.usc.irds.autoext.utils.Checks;
+
+import java.util.Arrays;
+
+import static java.lang.Math.min;
+
+/**
+ * Tree edit distance matrix which chooses the path decomposition for every pair of subtrees.
+ * Zhang-Shasha's algorithm decomposes both the trees along the left paths, so it computes
+ * O(n<sup>2</sup>m<sup>2</sup>) forest distances for the right heavy trees; running it on the mirror images
+ * only moves the problem to the left heavy trees. This computes the distance of a pair of subtrees by
+ * decomposing one of them along its left path or its right path and recursing into the subtrees hanging off
+ * that path, choosing the cheapest of the four options for every pair of subtrees. The number of forest
+ * distances of every option is counted up front, in O(nm) time, so a tree which is left heavy in a region
+ * and right heavy in another one is decomposed along different paths in those regions.
+ * This is the strategy framework of RTED restricted to the left and right paths; the heavy paths are not used.
+ * The distances are same as the ones computed by {@link ZSTEDistance}.
+ *
+ * <br/>
+ * <h1>References :</h1>
+ * <pre>
+ *     M. Pawlik and N. Augsten. 2011. RTED: a robust algorithm for the tree edit distance. Proc. VLDB Endow. 5, 4 (December 2011), 334-345.
+ * </pre>
+ * @see PathStrategyTEDComputer
+ */
+public class PathStrategyTEDistance {
+
+    /** decompose the subtree of first tree along its left path */
+    static final byte LEFT_PATH_1 = 0;
+    /** decompose the subtree of first tree along its right path */
+    static final byte RIGHT_PATH_1 = 1;
+    /** decompose the subtree of second tree along its left path */
+    static final byte LEFT_PATH_2 = 2;
+    /** decompose the subtree of second tree along its right path */
+    static final byte RIGHT_PATH_2 = 3;
+
+    private final Layout left1;
+    private final Layout right1;
+    private final Layout left2;
+    private final Layout right2;
+    private final int iSize;
+    private final int jSize;
+    private final EditCost<TreeNode> cost;
+
+    private byte[] strategies;
+    private double strategyCost;
+    private double[] treeDist;
+    private double[] fd;
+    /** the sub problems to be solved, (i, j, expanded) triples */
+    private int[] frames = new int[3 * 16];
+    private int numFrames;
+
+    /**
+     * Creates a Edit distance matrix for given compact trees.
+     * Both the trees must have been built using same label dictionary.
+     * @param left1 first tree
+     * @param right1 mirror image of first tree
+     * @param left2 second tree
+     * @param right2 mirror image of second tree
+     * @param cost costs for edit operations
+     */
+    public PathStrategyTEDistance(CompactTree left1, CompactTree right1, CompactTree left2, CompactTree right2,
+                                  EditCost<TreeNode> cost) {
+        Checks.check(!left1.isMirrored() && !left2.isMirrored() && right1.isMirrored() && right2.isMirrored(),
+                "Expected the trees and their mirror images");
+        Checks.check(left1.size() == right1.size() && left2.size() == right2.size(),
+                "The mirror images should be of the same trees");
+        this.iSize = left1.size();
+        this.jSize = left2.size();
+        this.cost = cost;
+        this.left1 = new Layout(left1);
+        this.left2 = new Layout(left2);
+        this.right1 = new Layout(right1, this.left1);
+        this.right2 = new Layout(right2, this.left2);
+    }
+
+    /**
+     * Gets the number of forest distances computed with the cheapest strategy.
+     * Zhang-Shasha's algorithm computes as many as the product of key root costs of the trees
+     * @return number of forest distances
+     * @see CompactTree#getKeyRootCost()
+     */
+    public double getStrategyCost() {
+        if (strategies == null) {
+            computeStrategies();
+        }
+        return strategyCost;
+    }
+
+    /**
+     * Computes and returns edit distance
+     * @return min edit distance between trees
+     */
+    public double compute() {
+        if (cost.getNoEditCost() == 0.0 && left1.tree.isIdentical(left2.tree)) {
+            // identity mapping costs nothing
+            return 0.0;
+        }
+        if (strategies == null) {
+            computeStrategies();
+        }
+        ZSTEDWorkspace workspace = ZSTEDWorkspace.get();
+        this.treeDist = workspace.treeDist(iSize * jSize);
+        this.fd = workspace.forestDist((iSize + 1) * (jSize + 1));
+        // a sub problem is expanded into the sub problems of the subtrees hanging off its path,
+        // which are solved before the path itself
+        push(iSize - 1, jSize - 1, 0);
+        while (numFrames > 0) {
+            numFrames -= 3;
+            int i = frames[numFrames];
+            int j = frames[numFrames + 1];
+            boolean expanded = frames[numFrames + 2] != 0;
+            byte strategy = strategies[i * jSize + j];
+            if (expanded) {
+                computePath(i, j, strategy);
+            } else {
+                push(i, j, 1);
+                if (strategy == LEFT_PATH_1 || strategy == RIGHT_PATH_1) {
+                    pushHangingSubtrees(left1.lmds, i, strategy == LEFT_PATH_1, j, true);
+                } else {
+                    pushHangingSubtrees(left2.lmds, j, strategy == LEFT_PATH_2, i, false);
+                }
+            }
+        }
+        double distance = treeDist[iSize * jSize - 1];
+        // the buffers belong to the thread, don't hold them any longer
+        this.treeDist = null;
+        this.fd = null;
+        return distance;
+    }
+
+    /**
+     * Computes the cheapest strategy for every pair of subtrees, bottom up.
+     * The cost of decomposing a subtree along a path is the cost of its forest distances along the path
+     * plus the costs of the subtrees hanging off the path; the latter are accumulated in the parents,
+     * so only the rows of nodes whose parents are not processed yet are kept in memory.
+     */
+    private void computeStrategies() {
+        int[] lmds1 = left1.lmds;
+        int[] lmds2 = left2.lmds;
+        long[] leftCosts1 = keyRootCosts(lmds1, true);
+        long[] rightCosts1 = keyRootCosts(lmds1, false);
+        long[] leftCosts2 = keyRootCosts(lmds2, true);
+        long[] rightCosts2 = keyRootCosts(lmds2, false);
+        int[] parents1 = parents(lmds1);
+
+        strategies = new byte[iSize * jSize];
+        // costs of the subtrees hanging off the left and right paths of the first tree, by the subtrees of second
+        double[][] leftHanging = new double[iSize][];
+        double[][] rightHanging = new double[iSize][];
+        double[] row = new double[jSize];
+        double[] leftHanging2 = new double[jSize];
+        double[] rightHanging2 = new double[jSize];
+        for (int i = 0; i < iSize; i++) {
+            double[] leftHanging1 = leftHanging[i];
+            double[] rightHanging1 = rightHanging[i];
+            leftHanging[i] = null;
+            rightHanging[i] = null;
+            double iNodes = i - lmds1[i] + 1;
+            for (int j = 0; j < jSize; j++) {
+                double leftSum = 0.0;
+                double rightSum = 0.0;
+                if (lmds2[j] != j) {
+                    double sum = 0.0;
+                    int first = j - 1;
+                    for (int c = j - 1; c >= lmds2[j]; c = lmds2[c] - 1) {
+                        sum += row[c];
+                        first = c;
+                    }
+                    leftSum = leftHanging2[first] + sum - row[first];
+                    rightSum = rightHanging2[j - 1] + sum - row[j - 1];
+                }
+                leftHanging2[j] = leftSum;
+                rightHanging2[j] = rightSum;
+                double jNodes = j - lmds2[j] + 1;
+
+                byte strategy = LEFT_PATH_1;
+                double best = iNodes * leftCosts2[j] + (leftHanging1 == null ? 0.0 : leftHanging1[j]);
+                double option = iNodes * rightCosts2[j] + (rightHanging1 == null ? 0.0 : rightHanging1[j]);
+                if (option < best) {
+                    best = option;
+                    strategy = RIGHT_PATH_1;
+                }
+                option = jNodes * leftCosts1[i] + leftSum;
+                if (option < best) {
+                    best = option;
+                    strategy = LEFT_PATH_2;
+                }
+                option = jNodes * rightCosts1[i] + rightSum;
+                if (option < best) {
+                    best = option;
+                    strategy = RIGHT_PATH_2;
+                }
+                strategies[i * jSize + j] = strategy;
+                row[j] = best;
+            }
+            int parent = parents1[i];
+            if (parent >= 0) {
+                // the first child continues the left path of parent, the last child continues the right path
+                leftHanging[parent] = lmds1[i] == lmds1[parent]
+                        ? add(leftHanging[parent], leftHanging1, true)
+                        : add(leftHanging[parent], row, false);
+                rightHanging[parent] = i == parent - 1
+                        ? add(rightHanging[parent], rightHanging1, true)
+                        : add(rightHanging[parent], row, false);
+            }
+        }
+        strategyCost = row[jSize - 1];
+    }
+
+    /**
+     * Adds the costs to the accumulated costs
+     * @param sums the accumulated costs, null for zeros
+     * @param costs the costs to be added, null for zeros
+     * @param owned true if the costs array is not used elsewhere, so it can be taken as the sums
+     * @return the accumulated costs
+     */
+    private static double[] add(double[] sums, double[] costs, boolean owned) {
+        if (costs == null) {
+            return sums;
+        }
+        if (sums == null) {
+            return owned ? costs : costs.clone();
+        }
+        for (int j = 0; j < sums.length; j++) {
+            sums[j] += costs[j];
+        }
+        return sums;
+    }
+
+    /**
+     * Computes the number of forest distances of the subtrees in the left or right decomposition,
+     * i.e. the sum of sizes of key roots in the subtree of every node
+     * @param lmds the left most descendants
+     * @param left true for the left decomposition, false for the right one
+     * @return the costs of the subtrees
+     */
+    private static long[] keyRootCosts(int[] lmds, boolean left) {
+        long[] costs = new long[lmds.length];
+        for (int i = 0; i < lmds.length; i++) {
+            long result = i - lmds[i] + 1;
+            int pathChild = -1;
+            for (int c = i - 1; c >= lmds[i]; c = lmds[c] - 1) {
+                result += costs[c];
+                if (left || pathChild < 0) {
+                    pathChild = c;
+                }
+            }
+            if (pathChild >= 0) {
+                // the child on the path isn't a key root of this subtree
+                result -= pathChild - lmds[pathChild] + 1;
+            }
+            costs[i] = result;
+        }
+        return costs;
+    }
+
+    private static int[] parents(int[] lmds) {
+        int[] parents = new int[lmds.length];
+        parents[lmds.length - 1] = -1;
+        for (int i = 0; i < lmds.length; i++) {
+            for (int c = i - 1; c >= lmds[i]; c = lmds[c] - 1) {
+                parents[c] = i;
+            }
+        }
+        return parents;
+    }
+
+    /**
+     * Pushes the sub problems of the subtrees hanging off the left or right path of a subtree
+     * @param lmds the left most descendants of the decomposed tree
+     * @param root the root of the decomposed subtree
+     * @param leftPath true for the left path, false for the right path
+     * @param other the root of the subtree of the other tree
+     * @param first true if the first tree is decomposed
+     */
+    private void pushHangingSubtrees(int[] lmds, int root, boolean leftPath, int other, boolean first) {
+        int node = root;
+        while (lmds[node] != node) {
+            int next = node - 1;
+            for (int c = node - 1; c >= lmds[node]; c = lmds[c] - 1) {
+                boolean onPath = leftPath ? lmds[c] == lmds[node] : c == node - 1;
+                if (onPath) {
+                    next = c;
+                } else {
+                    push(first ? c : other, first ? other : c, 0);
+                }
+            }
+            node = next;
+        }
+    }
+
+    private void push(int i, int j, int expanded) {
+        if (numFrames == frames.length) {
+            frames = Arrays.copyOf(frames, frames.length * 2);
+        }
+        frames[numFrames++] = i;
+        frames[numFrames++] = j;
+        frames[numFrames++] = expanded;
+    }
+
+    /**
+     * Computes the distances of the subtrees on the path of a subtree to all the subtrees of the other subtree.
+     * The distances of the subtrees hanging off the path are already computed
+     * @param i root of the subtree of first tree
+     * @param j root of the subtree of second tree
+     * @param strategy the path
+     */
+    private void computePath(int i, int j, byte strategy) {
+        switch (strategy) {
+            case LEFT_PATH_1:
+                for (int k = left2.firstKeyRoot(j); k >= 0; k = left2.nextKeyRoot(k, j)) {
+                    forestDistance(left1, i, left2, k);
+                }
+                break;
+            case RIGHT_PATH_1:
+                i = left1.mirror[i];
+                j = left2.mirror[j];
+                for (int k = right2.firstKeyRoot(j); k >= 0; k = right2.nextKeyRoot(k, j)) {
+                    forestDistance(right1, i, right2, k);
+                }
+                break;
+            case LEFT_PATH_2:
+                for (int k = left1.firstKeyRoot(i); k >= 0; k = left1.nextKeyRoot(k, i)) {
+                    forestDistance(left1, k, left2, j);
+                }
+                break;
+            default:
+                i = left1.mirror[i];
+                j = left2.mirror[j];
+                for (int k = right1.firstKeyRoot(i); k >= 0; k = right1.nextKeyRoot(k, i)) {
+                    forestDistance(right1, k, right2, j);
+                }
+                break;
+        }
+    }
+
+    /**
+     * Computes the forest distances of Zhang-Shasha's algorithm for a pair of key roots
+     * and the tree distances of the subtrees on their left paths
+     * @param iLayout layout of first tree
+     * @param i key root in first tree
+     * @param jLayout layout of second tree, mirrored if and only if the first one is
+     * @param j key root in second tree
+     */
+    private void forestDistance(Layout iLayout, int i, Layout jLayout, int j) {
+        int[] iLs = iLayout.lmds;
+        int[] jLs = jLayout.lmds;
+        int[] iIds = iLayout.toLeft;
+        int[] jIds = jLayout.toLeft;
+        TreeNode[] iNodes = iLayout.nodes;
+        TreeNode[] jNodes = jLayout.nodes;
+        int m = i - iLs[i] + 2;
+        int n = j - jLs[j] + 2;
+        // fd is a flat (m x n) matrix, the cell (x, y) is at x * n + y
+        double[] fd = this.fd;
+        double[] treeDist = this.treeDist;
+        int iOffset = iLs[i] - 1;
+        int jOffset = jLs[j] - 1;
+
+        fd[0] = 0.0;
+        for (int x = 1; x < m; x++) {
+            fd[x * n] = fd[(x - 1) * n] + cost.getRemoveCost(iNodes[x + iOffset]);
+        }
+        for (int y = 1; y < n; y++) {
+            fd[y] = fd[y - 1] + cost.getInsertCost(jNodes[y + jOffset]);
+        }
+        for (int x = 1; x < m; x++) {
+            int ix = x + iOffset;
+            TreeNode i1 = iNodes[ix];
+            int iLabel = iLayout.labels[ix];
+            // tree distances are stored by the post order indices of the trees, not their mirror images
+            int row = iIds[ix] * jSize;
+            int cur = x * n;
+            int prev = cur - n;
+            double iRemoveCost = cost.getRemoveCost(i1);
+            boolean iOnPath = iLs[i] == iLs[ix];
+            int pRow = (iLs[ix] - 1 - iOffset) * n;
+            for (int y = 1; y < n; y++) {
+                int jy = y + jOffset;
+                TreeNode j1 = jNodes[jy];
+                double removeCost = fd[prev + y] + iRemoveCost;
+                double insertCost = fd[cur + y - 1] + cost.getInsertCost(j1);
+                if (iOnPath && jLs[j] == jLs[jy]) {
+                    double replacementCost = fd[prev + y - 1] + (iLabel == jLayout.labels[jy]
+                            ? cost.getNoEditCost() : cost.getReplaceCost(i1, j1));
+                    fd[cur + y] = min(min(removeCost, insertCost), replacementCost);
+                    treeDist[row + jIds[jy]] = fd[cur + y];
+                } else {
+                    int q = jLs[jy] - 1 - jOffset;
+                    fd[cur + y] = min(min(removeCost, insertCost), fd[pRow + q] + treeDist[row + jIds[jy]]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Arrays of a compact tree or its mirror image, and the mapping between the post order indices of both
+     */
+    private static class Layout {
+        private final CompactTree tree;
+        private final TreeNode[] nodes;
+        private final int[] labels;
+        private final int[] lmds;
+        private final int[] keyRoots;
+        /** post order index in the tree for every post order index in this layout */
+        private final int[] toLeft;
+        /** post order index in the mirror image for every post order index in this layout, only for the trees */
+        private final int[] mirror;
+
+        /**
+         * Creates the layout of a tree
+         * @param tree the tree
+         */
+        Layout(CompactTree tree) {
+            this.tree = tree;
+            this.nodes = tree.nodes();
+            this.labels = tree.labels();
+            this.lmds = tree.leftMostDescendants();
+            this.keyRoots = tree.keyRoots();
+            int n = nodes.length;
+            this.toLeft = new int[n];
+            // the mirror image lists the nodes in the reverse of pre order, and the pre order index of a
+            // node is the number of nodes in the subtrees to its left plus the number of its ancestors
+            int[] preOrder = new int[n];
+            this.mirror = new int[n];
+            for (int i = n - 1; i >= 0; i--) {
+                toLeft[i] = i;
+                for (int c = i - 1; c >= lmds[i]; c = lmds[c] - 1) {
+                    preOrder[c] = preOrder[i] + 1 + lmds[c] - lmds[i];
+                }
+                mirror[i] = n - 1 - preOrder[i];
+            }
+        }
+
+        /**
+         * Creates the layout of a mirror image
+         * @param tree the mirror image
+         * @param left the layout of the tree
+         */
+        Layout(CompactTree tree, Layout left) {
+            this.tree = tree;
+            this.nodes = tree.nodes();
+            this.labels = tree.labels();
+            this.lmds = tree.leftMostDescendants();
+            this.keyRoots = tree.keyRoots();
+            this.mirror = null;
+            this.toLeft = new int[nodes.length];
+            for (int i = 0; i < nodes.length; i++) {
+                toLeft[left.mirror[i]] = i;
+            }
+        }
+
+        /**
+         * Gets the first key root in the subtree, the key roots of a subtree are its root
+         * and the key roots of the tree which are its descendants
+         * @param root the root of subtree
+         * @return the first key root
+         */
+        int firstKeyRoot(int root) {
+            int k = Arrays.binarySearch(keyRoots, lmds[root]);
+            k = k < 0 ? -k - 1 : k;
+            return k < keyRoots.length && keyRoots[k] < root ? keyRoots[k] : root;
+        }
+
+        /**
+         * Gets the next key root in the subtree
+         * @param keyRoot the current key root
+         * @param root the root of subtree
+         * @return the next key root, -1 after the root
+         */
+        int nextKeyRoot(int keyRoot, int root) {
+            if (keyRoot == root) {
+                return -1;
+            }
+            int k = Arrays.binarySearch(keyRoots, keyRoot) + 1;
+            return k < keyRoots.length && keyRoots[k] < root ? keyRoots[k] : root;
+        }
+    }
+}
@@ -0,0 +1,185 @@
+package edu.usc.irds.autoext.tree;
+
+import org.cyberneko.html.parsers.SAXParser;
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.DefaultHandler;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Builds detached trees directly from the SAX events of NekoHTML parser.
+ * The element skeleton and the CSS class names are collected as the elements are parsed,
+ * so neither the {@link org.w3c.dom.Document} nor the text nodes are created.
+ * The trees are same as the ones built from the DOM of the document element and then detached,
+ * unless a {@link TreeNormalizer} is used to shrink them while they are built.
+ * This class is not thread safe; an instance can be reused for parsing many documents.
+ *
+ * @see TreeNode#detach()
+ */
+public class SAXTreeBuilder extends DefaultHandler {
+
+    private static final String CLASS_ATTR = "class";
+
+    private final LabelDictionary dictionary;
+    private final TreeNormalizer normalizer;
+    private final SAXParser parser = new SAXParser();
+    private final Deque<TreeNode> stack = new ArrayDeque<>();
+    private List<TreeNode> postOrder;
+    private Set<String> classNames;
+    private TreeNode root;
+    /** depth of the element being skipped, relative to the dropped element */
+    private int skipDepth;
+
+    /**
+     * Creates a builder which interns the labels in the default dictionary
+     * @see LabelDictionary#getDefault()
+     */
+    public SAXTreeBuilder() {
+        this(LabelDictionary.getDefault());
+    }
+
+    /**
+     * Creates a builder
+     * @param dictionary the dictionary for interning the labels
+     */
+    public SAXTreeBuilder(LabelDictionary dictionary) {
+        this(dictionary, null);
+    }
+
+    /**
+     * Creates a builder
+     * @param dictionary the dictionary for interning the labels
+     * @param normalizer the normalizer to be applied while building the trees; null for no normalization
+     */
+    public SAXTreeBuilder(LabelDictionary dictionary, TreeNormalizer normalizer) {
+        this.dictionary = dictionary;
+        this.normalizer = normalizer;
+        this.parser.setContentHandler(this);
+    }
+
+    /**
+     * Gets the normalizer used by this builder
+     * @return normalizer, may be null
+     */
+    public TreeNormalizer getNormalizer() {
+        return normalizer;
+    }
+
+    /**
+     * Parses the html document and builds its tree
+     * @param source the html source
+     * @return the root of the tree, which is detached
+     * @throws IOException when an io error occurs
+     * @throws SAXException when the parser fails or the document has no elements
+     */
+    public TreeNode build(InputSource source) throws IOException, SAXException {
+        try {
+            parser.parse(source);
+            if (root == null) {
+                throw new SAXException("No elements in the document");
+            }
+            return root;
+        } finally {
+            // don't hold the tree
+            root = null;
+            postOrder = null;
+            classNames = null;
+            stack.clear();
+            parser.reset();
+        }
+    }
+
+    @Override
+    public void startDocument() throws SAXException {
+        stack.clear();
+        root = null;
+        skipDepth = 0;
+        postOrder = new ArrayList<>();
+        classNames = new HashSet<>();
+    }
+
+    @Override
+    public void startElement(String uri, String localName, String qName,
+                             Attributes attributes) throws SAXException {
+        if (skipDepth > 0) {
+            // inside a dropped subtree
+            skipDepth++;
+            return;
+        }
+        if (normalizer != null && normalizer.isDropped(qName, stack.size() + 1)) {
+            skipDepth = 1;
+            return;
+        }
+        TreeNode parent = stack.peek();
+        int labelId = dictionary.getId(qName);
+        TreeNode node = new TreeNode(null, parent, labelId, dictionary.getLabel(labelId));
+        if (parent != null) {
+            if (parent.children == null) {
+                parent.children = new ArrayList<>();
+            }
+            parent.children.add(node);
+        }
+        String classValue = attributes.getValue(CLASS_ATTR);
+        if (classValue != null) {
+            TreeNode.addClassNames(classValue, classNames);
+        }
+        stack.push(node);
+    }
+
+    @Override
+    public void endElement(String uri, String localName, String qName) throws SAXException {
+        if (skipDepth > 0) {
+            skipDepth--;
+            return;
+        }
+        // all the children are done
+        TreeNode node = stack.pop();
+        node.complete(postOrder.size());
+        postOrder.add(node);
+        TreeNode parent = stack.peek();
+        if (parent == null) {
+            root = node;
+        } else if (normalizer != null && normalizer.getMaxSiblingRun() > 0
+                && isRunFull(parent.children, normalizer.getMaxSiblingRun())) {
+            // collapse the run, the subtree is at the end of post order
+            parent.children.remove(parent.children.size() - 1);
+            postOrder.subList(postOrder.size() - node.size, postOrder.size()).clear();
+        }
+    }
+
+    /**
+     * Checks if the last child is preceded by a run of structurally identical siblings
+     * @param children the children, the last one is the new child
+     * @param maxRun maximum length of run
+     * @return true if there are {@code maxRun} identical siblings right before the last child
+     */
+    private static boolean isRunFull(List<TreeNode> children, int maxRun) {
+        int last = children.size() - 1;
+        if (last < maxRun) {
+            return false;
+        }
+        long hash = children.get(last).structureHash;
+        for (int i = last - 1; i >= last - maxRun; i--) {
+            if (children.get(i).structureHash != hash) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public void endDocument() throws SAXException {
+        if (root != null) {
+            root.classNames = classNames;
+            root.finishTree(postOrder.toArray(new TreeNode[postOrder.size()]));
+        }
+    }
+}
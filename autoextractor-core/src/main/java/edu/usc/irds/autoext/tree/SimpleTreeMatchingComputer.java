@@ -0,0 +1,146 @@
+package edu.usc.irds.autoext.tree;
+
+import edu.usc.irds.autoext.base.SimilarityComputer;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Computes the structural similarity of trees using Yang's simple tree matching (STM).
+ * STM finds the maximum top-down matching of two trees, where the nodes can be matched only if their parents
+ * are matched and the order of siblings is preserved. The matching size is normalized as
+ * {@code 2 * STM(A, B) / (|A| + |B|)}, so it is on the same scale as {@link StructureSimComputer}.
+ * The computation takes O(|A| x |B|) time and it is much cheaper than the tree edit distance,
+ * which makes it suitable for the first pass of clustering large sets of pages.
+ * The trees which are compared must have been built using the same {@link LabelDictionary}.
+ *
+ * <br/>
+ * <h1>References :</h1>
+ * <pre>
+ *     W. Yang. 1991. Identifying syntactic differences between two programs. Softw. Pract. Exper. 21, 7 (June 1991), 739-755.
+ *     Y. Zhai and B. Liu. 2005. Web data extraction based on partial tree alignment. In Proceedings of the 14th international conference on World Wide Web (WWW '05), 76-85.
+ * </pre>
+ * @see StructureSimComputer
+ */
+public class SimpleTreeMatchingComputer implements SimilarityComputer<TreeNode> {
+
+    @Override
+    public double compute(TreeNode tree1, TreeNode tree2) {
+        return 2.0 * computeMatching(tree1, tree2) / (tree1.getSize() + tree2.getSize());
+    }
+
+    /**
+     * Computes the size of the maximum top-down matching between trees.
+     * The pairs of subtrees are matched with an explicit stack, so the deep trees don't need a deep call stack.
+     * @param tree1 the first tree
+     * @param tree2 the second tree
+     * @return number of matched pairs of nodes
+     */
+    public int computeMatching(TreeNode tree1, TreeNode tree2) {
+        Deque<Frame> stack = new ArrayDeque<>();
+        int result = matchLeaves(tree1, tree2);
+        if (result >= 0) {
+            return result;
+        }
+        stack.push(new Frame(tree1, tree2));
+        while (!stack.isEmpty()) {
+            Frame frame = stack.peek();
+            if (result >= 0) {
+                // returned from the child pair
+                frame.next(result);
+            }
+            result = -1;
+            while (frame.hasNext()) {
+                int childMatch = matchLeaves(frame.child1(), frame.child2());
+                if (childMatch < 0) {
+                    break;
+                }
+                frame.next(childMatch);
+            }
+            if (frame.hasNext()) {
+                stack.push(new Frame(frame.child1(), frame.child2()));
+            } else {
+                stack.pop();
+                result = frame.result();
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Computes the matching of trees which can be matched without the dynamic programming
+     * @param node1 root of the first tree
+     * @param node2 root of the second tree
+     * @return the size of matching, or -1 if the children of both roots need to be matched
+     */
+    private static int matchLeaves(TreeNode node1, TreeNode node2) {
+        if (node1.getLabelId() != node2.getLabelId()) {
+            return 0;
+        }
+        if (!node1.hasChildNodes() || !node2.hasChildNodes()) {
+            return 1;
+        }
+        if (node1.getStructureHash() == node2.getStructureHash() && node1.getSize() == node2.getSize()) {
+            // identical subtrees match entirely
+            return node1.getSize();
+        }
+        return -1;
+    }
+
+    /**
+     * State of the matching of children of two nodes. The matrix of the dynamic programming is
+     * filled row by row, so only the previous and the current rows are kept.
+     */
+    private static class Frame {
+        private final List<TreeNode> children1;
+        private final List<TreeNode> children2;
+        private int[] prevRow;
+        private int[] row;
+        private int i = 1;
+        private int j = 1;
+
+        Frame(TreeNode node1, TreeNode node2) {
+            this.children1 = node1.getChildren();
+            this.children2 = node2.getChildren();
+            this.prevRow = new int[children2.size() + 1];
+            this.row = new int[children2.size() + 1];
+        }
+
+        boolean hasNext() {
+            return i <= children1.size();
+        }
+
+        TreeNode child1() {
+            return children1.get(i - 1);
+        }
+
+        TreeNode child2() {
+            return children2.get(j - 1);
+        }
+
+        /**
+         * Fills the current cell and moves to the next one
+         * @param childMatch the matching of the current pair of children
+         */
+        void next(int childMatch) {
+            row[j] = Math.max(Math.max(prevRow[j], row[j - 1]), prevRow[j - 1] + childMatch);
+            if (++j > children2.size()) {
+                int[] tmp = prevRow;
+                prevRow = row;
+                row = tmp;
+                i++;
+                j = 1;
+            }
+        }
+
+        /**
+         * Gets the matching of the nodes, must be called after all the cells are filled
+         * @return size of the matching
+         */
+        int result() {
+            // the roots are matched
+            return 1 + prevRow[children2.size()];
+        }
+    }
+}
@@ -15,6 +15,7 @@ public class StructureSimComputer implements SimilarityComputer<TreeNode> {
 
     private final EditCost<TreeNode> costMetric;
     private EditDistanceComputer<TreeNode> distanceComputer;
+    private double simThreshold = 0.0;
 
     public StructureSimComputer(EditDistanceComputer<TreeNode> distanceComputer) {
         this(distanceComputer.getCostMetric());
@@ -22,6 +23,17 @@ public class StructureSimComputer implements SimilarityComputer<TreeNode> {
 
     }
 
+    /**
+     * Creates a similarity computer which doesn't compute the exact similarity when it is below a threshold
+     * @param distanceComputer the edit distance computer
+     * @param simThreshold the similarity threshold. The similarities below this are reported as 0.0
+     * @see #compute(TreeNode, TreeNode, double)
+     */
+    public StructureSimComputer(EditDistanceComputer<TreeNode> distanceComputer, double simThreshold) {
+        this(distanceComputer);
+        this.simThreshold = simThreshold;
+    }
+
     public StructureSimComputer(EditCost<TreeNode> costMetric) {
         this.costMetric = costMetric;
     }
@@ -34,10 +46,36 @@ public class StructureSimComputer implements SimilarityComputer<TreeNode> {
      */
     @Override
     public double compute(TreeNode tree1, TreeNode tree2){
+        if (simThreshold > 0.0) {
+            return compute(tree1, tree2, simThreshold);
+        }
         return computeSimilarity(distanceComputer.computeDistance(tree1, tree2),
                 tree1.getSize(), tree2.getSize());
     }
 
+    /**
+     * Computes similarity between the trees, if it is not below the given minimum similarity.
+     * The minimum similarity is translated to the maximum edit distance, so the distance computer
+     * can stop early for the dissimilar trees.
+     * @param tree1 first tree
+     * @param tree2 second tree
+     * @param minSimilarity the minimum similarity of interest
+     * @return similarity measure if it is greater than or equal to {@code minSimilarity}; 0.0 otherwise
+     */
+    public double compute(TreeNode tree1, TreeNode tree2, double minSimilarity){
+        int size1 = tree1.getSize();
+        int size2 = tree2.getSize();
+        double maxDistance = (1.0 - minSimilarity) * costMetric.getMaxUnitCost() * (size1 + size2);
+        // some slack for the rounding errors, the similarity is compared again below
+        maxDistance += Math.ulp(maxDistance) * 4;
+        double distance = distanceComputer.computeDistance(tree1, tree2, maxDistance);
+        if (distance == EditDistanceComputer.DISTANCE_EXCEEDED) {
+            return 0.0;
+        }
+        double similarity = computeSimilarity(distance, size1, size2);
+        return similarity >= minSimilarity ? similarity : 0.0;
+    }
+
     /**
      * Computes similarity between the trees using edit distance measure
      * @param distance first distance
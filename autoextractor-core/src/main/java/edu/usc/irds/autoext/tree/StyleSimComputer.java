@@ -1,7 +1,6 @@
 package edu.usc.irds.autoext.tree;
 
 import edu.usc.irds.autoext.base.SimilarityComputer;
-import edu.usc.irds.autoext.utils.XPathEvaluator;
 import org.w3c.dom.Element;
 
 import java.util.Set;
@@ -11,17 +10,24 @@ import java.util.Set;
  */
 public class StyleSimComputer implements SimilarityComputer<TreeNode> {
 
-    private static XPathEvaluator xPathUtil = new XPathEvaluator();
-
     /**
-     * Computes the stylistic similarity
+     * Computes the stylistic similarity. The class names are found by walking the DOM trees;
+     * prefer {@link #compute(TreeNode, TreeNode)} when the trees are compared many times
      * @param elem1 first element
      * @param elem2 second element
      * @returnt the style similarity
      */
     public double compute(Element elem1, Element elem2) {
-        Set<String> setA = xPathUtil.findUniqueClassNames(elem1);
-        Set<String> setB = xPathUtil.findUniqueClassNames(elem2);
+        return compute(TreeNode.findClassNames(elem1), TreeNode.findClassNames(elem2));
+    }
+
+    /**
+     * Computes the stylistic similarity from the class names
+     * @param setA class names of first tree
+     * @param setB class names of second tree
+     * @return the style similarity
+     */
+    public double compute(Set<String> setA, Set<String> setB) {
         int modA = setA.size();
         int modB = setB.size();
         if (modA == 0 && modB == 0) {
@@ -31,7 +37,7 @@ public class StyleSimComputer implements SimilarityComputer<TreeNode> {
         }
         int intersectSize = countIntersection(setA, setB);
         // the jaccards similarity
-        return intersectSize / (modA + modB - intersectSize);
+        return (double) intersectSize / (modA + modB - intersectSize);
     }
 
     /**
@@ -60,9 +66,47 @@ public class StyleSimComputer implements SimilarityComputer<TreeNode> {
         return result;
     }
 
+    /**
+     * Computes the stylistic similarity from the hashes of class names
+     * @param sortedA sorted hashes of class names of first tree
+     * @param sortedB sorted hashes of class names of second tree
+     * @return the style similarity, same as the similarity of the class names
+     * @see TreeFeatures#getClassHashes()
+     */
+    public double compute(long[] sortedA, long[] sortedB) {
+        int modA = sortedA.length;
+        int modB = sortedB.length;
+        if (modA == 0 && modB == 0) {
+            return 1.0;
+        }
+        int intersectSize = countIntersection(sortedA, sortedB);
+        return (double) intersectSize / (modA + modB - intersectSize);
+    }
+
+    /**
+     * Counts the common elements of two sorted arrays by merging them
+     * @param sorted1 first sorted array of unique elements
+     * @param sorted2 second sorted array of unique elements
+     * @return size of intersection
+     */
+    public static int countIntersection(long[] sorted1, long[] sorted2) {
+        int i = 0, j = 0, common = 0;
+        while (i < sorted1.length && j < sorted2.length) {
+            if (sorted1[i] == sorted2[j]) {
+                common++;
+                i++;
+                j++;
+            } else if (sorted1[i] < sorted2[j]) {
+                i++;
+            } else {
+                j++;
+            }
+        }
+        return common;
+    }
+
     @Override
     public double compute(TreeNode obj1, TreeNode obj2) {
-        //TODO: resolve the casts.. This could cause type cast errors
-        return compute((Element) obj1.innerNode, (Element) obj2.innerNode);
+        return compute(obj1.getFeatures().getClassHashes(), obj2.getFeatures().getClassHashes());
     }
 }
@@ -0,0 +1,105 @@
+package edu.usc.irds.autoext.tree;
+
+import edu.usc.irds.autoext.utils.Hashing;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * The features of a tree which are derived from its structure and used by the similarity computers,
+ * such as the compact trees, the label and degree histograms, the pq-gram profiles and the CSS class names.
+ * A tree takes part in n pairs of a similarity matrix, so the features are computed once, when they are
+ * needed for the first time, and reused for all the pairs.
+ * The features are held by the tree, so they take memory for as long as the tree is alive.
+ * The trees must not be modified after their features are computed.
+ * This class is thread safe; a feature may be computed more than once by the concurrent threads,
+ * but all the threads see the same values.
+ *
+ * @see TreeNode#getFeatures()
+ */
+public class TreeFeatures {
+
+    private final TreeNode root;
+    private volatile CompactTree compactTree;
+    private volatile CompactTree mirroredTree;
+    private volatile Set<String> classNames;
+    private volatile long[] classHashes;
+    private final Map<Long, long[]> profiles = new ConcurrentHashMap<>(2);
+
+    /**
+     * Creates the features of a tree
+     * @param root the root of tree
+     */
+    TreeFeatures(TreeNode root) {
+        this.root = root;
+    }
+
+    /**
+     * Gets the compact representation of the tree. The label and degree histograms are
+     * cached in the compact tree
+     * @param mirrored true for the mirror image of the tree
+     * @return the compact tree
+     * @see CompactTree#getSortedLabels()
+     * @see CompactTree#getSortedDegrees()
+     */
+    public CompactTree getCompactTree(boolean mirrored) {
+        if (mirrored) {
+            if (mirroredTree == null) {
+                mirroredTree = new CompactTree(root, true);
+            }
+            return mirroredTree;
+        }
+        if (compactTree == null) {
+            compactTree = new CompactTree(root, false);
+        }
+        return compactTree;
+    }
+
+    /**
+     * Gets the pq-gram profile of the tree
+     * @param p number of ancestors in the stem of pq-gram
+     * @param q number of children in the base of pq-gram
+     * @param builder the function which computes the profile when it is not computed yet
+     * @return sorted hashes of pq-grams. The returned array is shared, it shall not be modified
+     * @see PQGramComputer#computeProfile(TreeNode)
+     */
+    public long[] getPQGramProfile(int p, int q, Function<TreeNode, long[]> builder) {
+        return profiles.computeIfAbsent(((long) p << 32) | q, key -> builder.apply(root));
+    }
+
+    /**
+     * Gets the unique CSS class names used in the tree
+     * @return set of class names
+     * @see TreeNode#getClassNames()
+     */
+    public Set<String> getClassNames() {
+        if (classNames == null) {
+            classNames = root.getClassNames();
+        }
+        return classNames;
+    }
+
+    /**
+     * Gets the 64 bit hashes of the CSS class names used in the tree.
+     * Unlike the ids in a dictionary, the hashes need no state shared by the trees, so the trees
+     * of different corpora can be compared without the vocabularies of all of them held in memory
+     * @return sorted hashes of class names. The returned array is shared, it shall not be modified
+     * @see Hashing#hash(CharSequence)
+     */
+    public long[] getClassHashes() {
+        if (classHashes == null) {
+            Set<String> names = getClassNames();
+            long[] hashes = new long[names.size()];
+            int i = 0;
+            for (String name : names) {
+                hashes[i++] = Hashing.hash(name);
+            }
+            Arrays.sort(hashes);
+            classHashes = hashes;
+        }
+        return classHashes;
+    }
+}
@@ -0,0 +1,60 @@
+package edu.usc.irds.autoext.tree;
+
+/**
+ * Defines contract for cheap lower bounds on tree edit distance.
+ * The bound is expressed as number of edit operations; it is scaled with
+ * {@link edu.usc.irds.autoext.base.EditCost#getMinUnitCost()} to get a lower bound on the distance.
+ *
+ * @see LowerBoundFilter
+ */
+public interface TreeLowerBound {
+
+    /**
+     * Computes lower bound on the number of edit operations required to transform one tree to another
+     * @param tree1 the first tree
+     * @param tree2 the second tree
+     * @return lower bound on number of edit operations
+     */
+    double lowerBound(CompactTree tree1, CompactTree tree2);
+
+    /**
+     * Size difference bound : that many nodes have to be inserted or removed
+     */
+    TreeLowerBound SIZE = (tree1, tree2) -> Math.abs(tree1.size() - tree2.size());
+
+    /**
+     * Label histogram bound : an insert or remove changes the label histogram by one,
+     * and a replace changes it by two.
+     */
+    TreeLowerBound LABEL_HISTOGRAM = (tree1, tree2) ->
+            Math.ceil(l1Distance(tree1.getSortedLabels(), tree2.getSortedLabels()) / 2.0);
+
+    /**
+     * Degree histogram bound : an insert or remove changes the degree histogram by at most three
+     * (the node itself, and the old and new degree of its parent), and a replace doesn't change it.
+     */
+    TreeLowerBound DEGREE_HISTOGRAM = (tree1, tree2) ->
+            Math.ceil(l1Distance(tree1.getSortedDegrees(), tree2.getSortedDegrees()) / 3.0);
+
+    /**
+     * Computes L1 distance between histograms of the values
+     * @param sorted1 first list of values in sorted order
+     * @param sorted2 second list of values in sorted order
+     * @return the L1 distance, i.e. the size of the symmetric difference of the multi sets
+     */
+    static int l1Distance(int[] sorted1, int[] sorted2) {
+        int i = 0, j = 0, common = 0;
+        while (i < sorted1.length && j < sorted2.length) {
+            if (sorted1[i] == sorted2[j]) {
+                common++;
+                i++;
+                j++;
+            } else if (sorted1[i] < sorted2[j]) {
+                i++;
+            } else {
+                j++;
+            }
+        }
+        return sorted1.length + sorted2.length - 2 * common;
+    }
+}
@@ -1,14 +1,22 @@
 package edu.usc.irds.autoext.tree;
 
+import edu.usc.irds.autoext.utils.Hashing;
 import org.cyberneko.html.parsers.DOMParser;
 import org.w3c.dom.Document;
+import org.w3c.dom.Element;
 import org.w3c.dom.Node;
 import org.w3c.dom.NodeList;
 import org.xml.sax.InputSource;
 
 import java.io.FileReader;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.concurrent.atomic.AtomicInteger;
 
 /**
@@ -17,6 +25,8 @@ import java.util.concurrent.atomic.AtomicInteger;
  */
 public class TreeNode {
 
+    private static final String CLASS_ATTR = "class";
+
     protected String externalId;
     protected String nodeName;
     protected Node innerNode;
@@ -24,47 +34,177 @@ public class TreeNode {
     protected List<TreeNode> children;
     protected TreeNode leftMostDescendant;
 
+    protected int labelId;
+    protected long structureHash;
+    protected Set<String> classNames;
+
     protected int index;
     protected int size;
 
+    /**
+     * Nodes in post order and key roots, cached only in the node from which the tree was indexed
+     */
+    private TreeNode[] postOrder;
+    private TreeNode[] keyRoots;
+    private volatile TreeFeatures features;
+
     private TreeNode(String nodeName ) {
+        this.labelId = LabelDictionary.getDefault().getId(nodeName);
+        this.nodeName = LabelDictionary.getDefault().getLabel(labelId);
+        complete(0);
+        finishTree(new TreeNode[]{this});
+    }
+
+    /**
+     * Creates a node without children. The tree is linked and completed by the builder
+     * @param innerNode the DOM API node, null for the detached nodes
+     * @param parent the parent node
+     * @param labelId the id of label
+     * @param nodeName the label
+     * @see SAXTreeBuilder
+     */
+    TreeNode(Node innerNode, TreeNode parent, int labelId, String nodeName) {
+        this.innerNode = innerNode;
+        this.parent = parent;
+        this.labelId = labelId;
         this.nodeName = nodeName;
-        this.leftMostDescendant = findLeftMostDescendant();
     }
 
     /**
-     *Creates a tree node object
+     *Creates a tree node object. The labels are interned in the default dictionary
      * @param innerNode the DOM API node
      * @param parent the parent node. For the root node, set to {@code null}
+     * @see LabelDictionary#getDefault()
      */
     public TreeNode(Node innerNode, TreeNode parent)  {
+        this(innerNode, parent, LabelDictionary.getDefault());
+    }
+
+    /**
+     *Creates a tree node object. The whole tree under the node is built and indexed in one
+     * iterative pass, so the deeply nested documents don't need a deep call stack.
+     * @param innerNode the DOM API node
+     * @param parent the parent node. For the root node, set to {@code null}
+     * @param dictionary the dictionary for interning the labels
+     */
+    public TreeNode(Node innerNode, TreeNode parent, LabelDictionary dictionary)  {
         this.innerNode = innerNode;
         this.parent = parent;
-        if (innerNode.hasChildNodes()) {
-            children = new ArrayList<>();
-            NodeList childNodes = innerNode.getChildNodes();
-            for (int i = 0; i < childNodes.getLength(); i++) {
-                Node ithNode = childNodes.item(i);
-                if (ithNode.getNodeType() != Node.ELEMENT_NODE){
-                    //skip all other nodes
-                    continue;
-                }
-                TreeNode child = new TreeNode(ithNode, this);
-                children.add(child);
+        this.labelId = dictionary.getId(innerNode.getNodeName());
+        this.nodeName = dictionary.getLabel(labelId);
+
+        List<TreeNode> nodes = new ArrayList<>();
+        // the class names are collected in the same walk, so they aren't searched again for every pair
+        Set<String> names = new HashSet<>();
+        addClassNames(innerNode, names);
+        // (node, next DOM child position) pairs on the stack
+        Deque<TreeNode> nodeStack = new ArrayDeque<>();
+        Deque<Integer> posStack = new ArrayDeque<>();
+        nodeStack.push(this);
+        posStack.push(0);
+        while (!nodeStack.isEmpty()) {
+            TreeNode node = nodeStack.peek();
+            int pos = posStack.pop();
+            NodeList childNodes = node.innerNode.getChildNodes();
+            if (pos == 0 && node.innerNode.hasChildNodes()) {
+                node.children = new ArrayList<>();
+            }
+            while (pos < childNodes.getLength()
+                    && childNodes.item(pos).getNodeType() != Node.ELEMENT_NODE) {
+                //skip all other nodes
+                pos++;
+            }
+            if (pos < childNodes.getLength()) {
+                Node ithNode = childNodes.item(pos);
+                int childLabel = dictionary.getId(ithNode.getNodeName());
+                TreeNode child = new TreeNode(ithNode, node, childLabel, dictionary.getLabel(childLabel));
+                node.children.add(child);
+                addClassNames(ithNode, names);
+                posStack.push(pos + 1);
+                nodeStack.push(child);
+                posStack.push(0);
+            } else {
+                // all the children are done
+                nodeStack.pop();
+                node.complete(nodes.size());
+                nodes.add(node);
             }
         }
-        this.leftMostDescendant = findLeftMostDescendant();
-        this.nodeName = innerNode.getNodeName();
-        if (parent == null) {
-            //index only for the root node!
-            this.postOrderIndex(new AtomicInteger(0));
+        this.classNames = names;
+        finishTree(nodes.toArray(new TreeNode[nodes.size()]));
+    }
+
+    /**
+     * Completes this node after all its children are completed, i.e. the nodes are completed in post order.
+     * Sets the post order index, size, leftmost descendant and the structure hash.
+     * @param index the post order index of this node
+     */
+    void complete(int index) {
+        this.index = index;
+        this.leftMostDescendant = hasChildNodes() ? children.get(0).leftMostDescendant : this;
+        this.size = index - leftMostDescendant.index + 1;
+        this.structureHash = computeStructureHash();
+    }
+
+    /**
+     * Caches the post order and the key roots in the root of (sub)tree.
+     * All the nodes must have been completed.
+     * @param postOrder the nodes of tree in the post order
+     * @see #complete(int)
+     */
+    void finishTree(TreeNode[] postOrder) {
+        TreeNode[] buffer = new TreeNode[postOrder.length];
+        int count = 0;
+        for (TreeNode node : postOrder) {
+            // the first child shares the left path of its parent, all others start new left paths
+            if (node == this || node.parent.children.get(0) != node) {
+                buffer[count++] = node;
+            }
         }
+        this.postOrder = postOrder;
+        this.keyRoots = Arrays.copyOf(buffer, count);
     }
 
     public String getNodeName() {
         return nodeName;
     }
 
+    /**
+     * Gets the id of label of this node. The nodes having same label have same id
+     * when they are built using the same dictionary
+     * @return label id
+     * @see LabelDictionary
+     */
+    public int getLabelId() {
+        return labelId;
+    }
+
+    /**
+     * Gets the structural fingerprint of the subtree rooted at this node.
+     * The hash is computed from the labels and the shape of the subtree, so the identical subtrees
+     * have same hash, even across the documents and the JVMs.
+     * @return the structure hash
+     */
+    public long getStructureHash() {
+        return structureHash;
+    }
+
+    /**
+     * Computes the structure hash from the label and hashes of the children
+     * @return the structure hash
+     */
+    private long computeStructureHash() {
+        long hash = Hashing.mix(nodeName.hashCode());
+        int numChildren = 0;
+        if (hasChildNodes()) {
+            for (TreeNode child : children) {
+                hash = Hashing.combine(hash, child.structureHash);
+            }
+            numChildren = children.size();
+        }
+        return Hashing.combine(hash, numChildren);
+    }
+
     public int getIndex() {
         return index;
     }
@@ -79,7 +219,8 @@ public class TreeNode {
 
     /**
      * gets the inner DOM API node to which this node is a wrapper
-     * @return inner node
+     * @return inner node; null when the tree is detached
+     * @see #detach()
      */
     public Node getInnerNode() {
         return innerNode;
@@ -94,6 +235,114 @@ public class TreeNode {
         return parent;
     }
 
+    /**
+     * Extracts the features needed by the similarity computers and releases the DOM.
+     * The inner DOM nodes pin the whole document including text, attributes and comments,
+     * so the trees which are kept in memory for a long time should be detached.
+     * After detaching, {@link #getInnerNode()} returns null for all the nodes in this tree.
+     * @return this node
+     * @see #getClassNames()
+     */
+    public TreeNode detach() {
+        this.classNames = getClassNames();
+        for (TreeNode node : postOrderTraverse()) {
+            node.innerNode = null;
+        }
+        return this;
+    }
+
+    /**
+     * Gets the features of the (sub)tree rooted at this node, which are computed lazily and reused
+     * by the similarity computers
+     * @return the features of this tree
+     */
+    public TreeFeatures getFeatures() {
+        TreeFeatures result = features;
+        if (result == null) {
+            synchronized (this) {
+                result = features;
+                if (result == null) {
+                    features = result = new TreeFeatures(this);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Checks if this node is detached from the DOM
+     * @return true if the DOM node is released
+     * @see #detach()
+     */
+    public boolean isDetached() {
+        return innerNode == null;
+    }
+
+    /**
+     * Gets the unique CSS class names used in the subtree rooted at this node.
+     * The names are collected while building the tree, so this is a lookup for the root nodes
+     * @return set of class names
+     */
+    public Set<String> getClassNames() {
+        if (classNames != null) {
+            return classNames;
+        }
+        Set<String> names = new HashSet<>();
+        for (TreeNode node : postOrderTraverse()) {
+            addClassNames(node.innerNode, names);
+        }
+        return names;
+    }
+
+    /**
+     * Finds the unique CSS class names used in a DOM subtree, by walking the subtree once
+     * @param root the root of the subtree
+     * @return set of class names
+     */
+    public static Set<String> findClassNames(Node root) {
+        Set<String> names = new HashSet<>();
+        Deque<Node> stack = new ArrayDeque<>();
+        stack.push(root);
+        while (!stack.isEmpty()) {
+            Node node = stack.pop();
+            addClassNames(node, names);
+            for (Node child = node.getFirstChild(); child != null; child = child.getNextSibling()) {
+                if (child.getNodeType() == Node.ELEMENT_NODE) {
+                    stack.push(child);
+                }
+            }
+        }
+        return names;
+    }
+
+    private static void addClassNames(Node node, Set<String> names) {
+        if (node instanceof Element && ((Element) node).hasAttribute(CLASS_ATTR)) {
+            addClassNames(((Element) node).getAttribute(CLASS_ATTR), names);
+        }
+    }
+
+    /**
+     * Splits the value of a class attribute at the white spaces, without regular expressions
+     * @param classValue value of the class attribute
+     * @param names set to which the class names are added
+     */
+    static void addClassNames(String classValue, Set<String> names) {
+        int start = -1;
+        for (int i = 0; i < classValue.length(); i++) {
+            if (Character.isWhitespace(classValue.charAt(i))) {
+                if (start >= 0) {
+                    names.add(classValue.substring(start, i));
+                    start = -1;
+                }
+            } else if (start < 0) {
+                start = i;
+            }
+        }
+        if (start >= 0) {
+            names.add(classValue.substring(start));
+        }
+    }
+
     /**
      * gets all children
      * @return list of children if they are present or null if they are absent
@@ -118,7 +367,11 @@ public class TreeNode {
      * @see #getLeftMostDescendant()
      */
     public TreeNode findLeftMostDescendant(){
-        return hasChildNodes() ? children.get(0).getLeftMostDescendant() :  this;
+        TreeNode node = this;
+        while (node.hasChildNodes()) {
+            node = node.children.get(0);
+        }
+        return node;
     }
 
     /**
@@ -130,7 +383,7 @@ public class TreeNode {
 
     private void prettyPrint(String prefix, boolean isTail) {
         String name = String.format("[%d:%d] %s desc:[%s]", index, size,
-                innerNode.getNodeName(), leftMostDescendant.index);
+                nodeName, leftMostDescendant.index);
         System.out.println(prefix + (isTail ? "└── " : "├── ") + name);
         if (hasChildNodes()) {
             for (int i = 0; i < children.size() - 1; i++) {
@@ -141,42 +394,42 @@ public class TreeNode {
     }
 
     /**
-     * Traverses the tree in post order
-     * @param traversedNodes List of nodes to which the new nodes are to be appended
+     * Traverses the Tree in post order
+     * @return list of nodes visited along the post order traversal. The list is a read only view of the
+     * cached traversal
      */
-    private void postOrderTraverse(List<TreeNode> traversedNodes){
-        if (hasChildNodes()){
-            for (TreeNode child : children) {
-                child.postOrderTraverse(traversedNodes);
-            }
-        }
-        traversedNodes.add(this);
+    public List<TreeNode> postOrderTraverse(){
+        TreeNode root = indexedRoot();
+        // post order of a subtree is a contiguous range in the post order of the tree
+        int base = root.leftMostDescendant.index;
+        return Collections.unmodifiableList(Arrays.asList(root.postOrder)
+                .subList(leftMostDescendant.index - base, index - base + 1));
     }
 
     /**
-     * Traverses the Tree in post order
-     * @return list of nodes visited along the post order traversal
+     * Finds the node in which the post order and key roots are cached
+     * @return the node from which this tree was indexed
      */
-    public List<TreeNode> postOrderTraverse(){
-        List<TreeNode> elements = new ArrayList<>();
-        postOrderTraverse(elements);
-        return elements;
+    private TreeNode indexedRoot() {
+        TreeNode node = this;
+        while (node.postOrder == null) {
+            node = node.parent;
+        }
+        return node;
     }
 
     /**
-     * Indexes the tree nodes in post order
-     * @param startIndex the starting index
+     * Indexes the tree nodes in post order, so that the first node of this (sub)tree gets the starting index.
+     * The cached traversals locate the nodes by their indices relative to the root from which the tree
+     * was indexed, so all the nodes of that tree are shifted by the same amount, not only the ones in this subtree.
+     * @param startIndex the starting index; set to the index of this node when done
      */
     public void postOrderIndex(AtomicInteger startIndex){
-        int offset = startIndex.get();
-        if (hasChildNodes()) {
-            for (TreeNode child : children) {
-                child.postOrderIndex(startIndex);
-                startIndex.incrementAndGet();
-            }
+        int shift = startIndex.get() - leftMostDescendant.index;
+        for (TreeNode node : indexedRoot().postOrder) {
+            node.index += shift;
         }
-        this.index = startIndex.get();
-        this.size = this.index - offset + 1;
+        startIndex.set(this.index);
     }
 
     @Override
@@ -187,30 +440,20 @@ public class TreeNode {
     /**
      * gets key roots of the tree rooted at this tree. Key root is one whose leftmost descendant
      * is different than its immediate parent
-     * @param keyRootsBuffer buffer for updating the key roots
+     * @return list of all key root nodes in post order. The list is a read only view of the cached key roots
      */
-    private void getKeyRoots(List<TreeNode> keyRootsBuffer){
-        if (hasChildNodes()) {
-            for (TreeNode child : children) {
-                child.getKeyRoots(keyRootsBuffer);
-            }
+    public List<TreeNode> getKeyRoots() {
+        TreeNode[] rootKeyRoots = indexedRoot().keyRoots;
+        // key roots are in post order, so the ones in this subtree are in a contiguous range
+        int from = 0;
+        while (from < rootKeyRoots.length && rootKeyRoots[from].index < leftMostDescendant.index) {
+            from++;
         }
-        if (this.parent == null || //root node wont have parent
-                this.parent.leftMostDescendant.index != this.leftMostDescendant.index) {
-            //left descendant is not same as parent's left descendant => its a key mode
-            keyRootsBuffer.add(this);
+        int to = from;
+        while (to < rootKeyRoots.length && rootKeyRoots[to].index <= index) {
+            to++;
         }
-    }
-
-    /**
-     * gets key roots of the tree rooted at this tree. Key root is one whose leftmost descendant
-     * is different than its immediate parent
-     * @return list of all key root nodes
-     */
-    public List<TreeNode> getKeyRoots() {
-        List<TreeNode> keyRoots = new ArrayList<>();
-        getKeyRoots(keyRoots);
-        return keyRoots;
+        return Collections.unmodifiableList(Arrays.asList(rootKeyRoots).subList(from, to));
     }
 
     /**
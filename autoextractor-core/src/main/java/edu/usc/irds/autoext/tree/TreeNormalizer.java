@@ -0,0 +1,149 @@
+package edu.usc.irds.autoext.tree;
+
+import edu.usc.irds.autoext.utils.Checks;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Normalization profile which shrinks the trees while they are built, without losing the template signal.
+ * The steps are :
+ * <ul>
+ *     <li>dropping the subtrees of the elements which don't contribute to the page template,
+ *     such as script and style</li>
+ *     <li>collapsing the long runs of structurally identical siblings, such as list items and table rows</li>
+ *     <li>capping the depth of tree</li>
+ * </ul>
+ * Since the tree edit distance grows with the square of tree sizes, the normalized trees are much
+ * cheaper to compare.
+ * The profile is described by a specification like
+ * {@code drop=head,noscript,script,style,svg;runs=1;depth=0}, where {@code runs} is the maximum number of
+ * consecutive identical siblings to be kept and {@code depth} is the maximum depth of tree;
+ * 0 disables the step.
+ * <p>
+ * The profile is applied by {@link SAXTreeBuilder} only. The trees built from DOM nodes by
+ * {@link TreeNode#TreeNode(org.w3c.dom.Node, TreeNode)}, such as the ones compared by
+ * {@link ZSTEDComputer} from command line, are not normalized.
+ * </p>
+ *
+ * @see SAXTreeBuilder
+ */
+public class TreeNormalizer {
+
+    /**
+     * Specification of the profile which doesn't normalize
+     */
+    public static final String NONE = "none";
+
+    /**
+     * Specification of the default profile
+     */
+    public static final String DEFAULT = "drop=head,noscript,script,style,svg;runs=1;depth=0";
+
+    private final Set<String> droppedTags = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
+    private final int maxSiblingRun;
+    private final int maxDepth;
+
+    /**
+     * Creates a normalizer
+     * @param droppedTags names of the elements whose subtrees are to be dropped, case insensitive
+     * @param maxSiblingRun maximum number of consecutive structurally identical siblings to be kept;
+     *                      0 for no limit
+     * @param maxDepth maximum depth of the tree, the root is at depth 1; 0 for no limit
+     */
+    public TreeNormalizer(Set<String> droppedTags, int maxSiblingRun, int maxDepth) {
+        Checks.check(maxSiblingRun >= 0 && maxDepth >= 0, "The limits can't be negative");
+        this.droppedTags.addAll(droppedTags);
+        this.maxSiblingRun = maxSiblingRun;
+        this.maxDepth = maxDepth;
+    }
+
+    /**
+     * Creates a normalizer from the specification
+     * @param spec the specification, either {@link #NONE}, "default" or of the form {@link #DEFAULT}
+     * @return normalizer; null for {@link #NONE}
+     */
+    public static TreeNormalizer parse(String spec) {
+        if (spec == null || spec.trim().isEmpty() || NONE.equalsIgnoreCase(spec.trim())) {
+            return null;
+        }
+        if ("default".equalsIgnoreCase(spec.trim())) {
+            spec = DEFAULT;
+        }
+        Set<String> drop = Collections.emptySet();
+        int runs = 0;
+        int depth = 0;
+        for (String step : spec.split(";")) {
+            String[] parts = step.split("=", 2);
+            Checks.check(parts.length == 2, "Invalid normalization step :" + step);
+            String name = parts[0].trim();
+            String value = parts[1].trim();
+            switch (name) {
+                case "drop":
+                    drop = value.isEmpty() ? Collections.emptySet()
+                            : new TreeSet<>(Arrays.asList(value.split("\\s*,\\s*")));
+                    break;
+                case "runs":
+                    runs = Integer.parseInt(value);
+                    break;
+                case "depth":
+                    depth = Integer.parseInt(value);
+                    break;
+                default:
+                    throw new Checks.CheckFailedException("Unknown normalization step :" + name);
+            }
+        }
+        return new TreeNormalizer(drop, runs, depth);
+    }
+
+    /**
+     * Creates the default normalizer
+     * @return normalizer
+     * @see #DEFAULT
+     */
+    public static TreeNormalizer createDefault() {
+        return parse(DEFAULT);
+    }
+
+    /**
+     * Checks if the subtree of element should be dropped
+     * @param name the element name
+     * @param depth depth of the element, the root is at depth 1
+     * @return true if the subtree is to be dropped
+     */
+    public boolean isDropped(String name, int depth) {
+        return (maxDepth > 0 && depth > maxDepth) || droppedTags.contains(name);
+    }
+
+    /**
+     * Gets maximum number of consecutive structurally identical siblings to be kept
+     * @return maximum run of siblings; 0 for no limit
+     */
+    public int getMaxSiblingRun() {
+        return maxSiblingRun;
+    }
+
+    /**
+     * Gets the maximum depth of tree
+     * @return maximum depth, 0 for no limit
+     */
+    public int getMaxDepth() {
+        return maxDepth;
+    }
+
+    /**
+     * Gets the names of elements whose subtrees are dropped
+     * @return set of names
+     */
+    public Set<String> getDroppedTags() {
+        return Collections.unmodifiableSet(droppedTags);
+    }
+
+    @Override
+    public String toString() {
+        return "drop=" + String.join(",", droppedTags).toLowerCase()
+                + ";runs=" + maxSiblingRun + ";depth=" + maxDepth;
+    }
+}
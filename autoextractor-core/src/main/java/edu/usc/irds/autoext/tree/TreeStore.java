@@ -0,0 +1,159 @@
+package edu.usc.irds.autoext.tree;
+
+import edu.usc.irds.autoext.utils.Checks;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Stores the detached trees in a binary file, so they can be compared with the new trees later
+ * without parsing the documents again.
+ * The file has the labels used by the trees followed by the trees; a tree is stored as its external id,
+ * the label index and the number of children of its nodes in pre order, and its CSS class names.
+ *
+ * @see TreeNode#detach()
+ */
+public class TreeStore {
+
+    private static final int MAGIC = 0x54524545; // TREE
+    private static final int VERSION = 1;
+
+    /**
+     * Writes the trees to a file
+     * @param trees the trees
+     * @param file the file
+     * @throws IOException when an io error occurs
+     */
+    public static void write(List<TreeNode> trees, File file) throws IOException {
+        Map<String, Integer> labels = new LinkedHashMap<>();
+        for (TreeNode tree : trees) {
+            for (TreeNode node : tree.postOrderTraverse()) {
+                labels.putIfAbsent(node.getNodeName(), labels.size());
+            }
+        }
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(file)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(labels.size());
+            for (String label : labels.keySet()) {
+                out.writeUTF(label);
+            }
+            out.writeInt(trees.size());
+            Deque<TreeNode> stack = new ArrayDeque<>();
+            for (TreeNode tree : trees) {
+                out.writeUTF(tree.getExternalId() == null ? "" : tree.getExternalId());
+                out.writeInt(tree.getSize());
+                stack.push(tree);
+                while (!stack.isEmpty()) {
+                    TreeNode node = stack.pop();
+                    out.writeInt(labels.get(node.getNodeName()));
+                    List<TreeNode> children = node.getChildren();
+                    int numChildren = node.hasChildNodes() ? children.size() : 0;
+                    out.writeInt(numChildren);
+                    for (int i = numChildren - 1; i >= 0; i--) {
+                        stack.push(children.get(i));
+                    }
+                }
+                Set<String> classNames = tree.getClassNames();
+                out.writeInt(classNames.size());
+                for (String className : classNames) {
+                    out.writeUTF(className);
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads the trees written by {@link #write(List, File)}
+     * @param file the file
+     * @param dictionary the dictionary for interning the labels
+     * @return the detached trees
+     * @throws IOException when an io error occurs
+     */
+    public static List<TreeNode> read(File file, LabelDictionary dictionary) throws IOException {
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(file)))) {
+            Checks.check(in.readInt() == MAGIC, "Not a trees file :" + file);
+            Checks.check(in.readInt() == VERSION, "Unsupported trees file version :" + file);
+            int[] labelIds = new int[in.readInt()];
+            for (int i = 0; i < labelIds.length; i++) {
+                labelIds[i] = dictionary.getId(in.readUTF());
+            }
+            int numTrees = in.readInt();
+            List<TreeNode> trees = new ArrayList<>(numTrees);
+            for (int t = 0; t < numTrees; t++) {
+                String externalId = in.readUTF();
+                TreeNode[] postOrder = new TreeNode[in.readInt()];
+                TreeNode root = readNodes(in, labelIds, dictionary, postOrder);
+                int numClasses = in.readInt();
+                Set<String> classNames = new HashSet<>();
+                for (int i = 0; i < numClasses; i++) {
+                    classNames.add(in.readUTF());
+                }
+                root.classNames = classNames;
+                root.finishTree(postOrder);
+                root.setExternalId(externalId.isEmpty() ? null : externalId);
+                trees.add(root);
+            }
+            return trees;
+        }
+    }
+
+    /**
+     * Reads the nodes of a tree in pre order and completes them in post order
+     * @param in the input
+     * @param labelIds dictionary ids of the labels in file
+     * @param dictionary the dictionary
+     * @param postOrder array to be filled with the nodes in post order
+     * @return the root
+     * @throws IOException when an io error occurs
+     */
+    private static TreeNode readNodes(DataInputStream in, int[] labelIds, LabelDictionary dictionary,
+                                      TreeNode[] postOrder) throws IOException {
+        Deque<TreeNode> stack = new ArrayDeque<>();
+        Deque<Integer> remaining = new ArrayDeque<>();
+        TreeNode root = null;
+        int count = 0;
+        while (count < postOrder.length) {
+            TreeNode parent = stack.peek();
+            int labelId = labelIds[in.readInt()];
+            TreeNode node = new TreeNode(null, parent, labelId, dictionary.getLabel(labelId));
+            int numChildren = in.readInt();
+            if (parent == null) {
+                root = node;
+            } else {
+                if (parent.children == null) {
+                    parent.children = new ArrayList<>();
+                }
+                parent.children.add(node);
+                remaining.push(remaining.pop() - 1);
+            }
+            stack.push(node);
+            remaining.push(numChildren);
+            // the nodes whose children are all read are done
+            while (!stack.isEmpty() && remaining.peek() == 0) {
+                remaining.pop();
+                TreeNode done = stack.pop();
+                done.complete(count);
+                postOrder[count++] = done;
+            }
+        }
+        Checks.check(stack.isEmpty(), "Incomplete tree");
+        return root;
+    }
+}
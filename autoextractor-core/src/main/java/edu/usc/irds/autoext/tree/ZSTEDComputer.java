@@ -2,6 +2,10 @@ package edu.usc.irds.autoext.tree;
 
 import edu.usc.irds.autoext.base.EditCost;
 import edu.usc.irds.autoext.base.EditDistanceComputer;
+import edu.usc.irds.autoext.matrix.DenseMatrix;
+import edu.usc.irds.autoext.matrix.Matrix;
+import edu.usc.irds.autoext.utils.Checks;
+import edu.usc.irds.autoext.utils.DistanceCache;
 import edu.usc.irds.autoext.utils.MatrixUtils;
 import org.cyberneko.html.parsers.DOMParser;
 import org.kohsuke.args4j.CmdLineException;
@@ -16,6 +20,7 @@ import java.io.FileReader;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.ToDoubleBiFunction;
 
 /**
  * This class implements Zhang-Shasha's Tree Edit Distance (ZS-TED) algorithm for computing the
@@ -32,6 +37,7 @@ import java.util.List;
 public class ZSTEDComputer implements EditDistanceComputer<TreeNode> {
 
     private EditCost<TreeNode> costMetric = new DefaultEditCost();
+    private final LowerBoundFilter lowerBoundFilter;
 
     /**
      * CLI argument specification
@@ -45,18 +51,126 @@ public class ZSTEDComputer implements EditDistanceComputer<TreeNode> {
 
         @Option(name = "-dir", forbids = {"-in1", "-in2"})
         private File inputDir;
+
+        @Option(name = "-cache", depends = "-dir", usage = "Path to distance cache file")
+        private File cacheFile;
+    }
+
+    public ZSTEDComputer() {
+        this(LowerBoundFilter.createDefault());
+    }
+
+    /**
+     * Creates a computer
+     * @param lowerBoundFilter the lower bounds to be checked before computing the bounded distances;
+     *                         {@code null} to disable the checks
+     * @see #computeDistance(CompactTree, CompactTree, double)
+     */
+    public ZSTEDComputer(LowerBoundFilter lowerBoundFilter) {
+        this.lowerBoundFilter = lowerBoundFilter;
+    }
+
+    /**
+     * Gets the lower bound filter used by this computer
+     * @return lower bound filter, may be null
+     */
+    public LowerBoundFilter getLowerBoundFilter() {
+        return lowerBoundFilter;
     }
 
     @Override
     public double computeDistance(TreeNode tree1, TreeNode tree2) {
+        return computeDistance(compact(tree1), compact(tree2));
+    }
+
+    /**
+     * Computes edit distance between two compact trees
+     * @param tree1 the first tree
+     * @param tree2 the second tree
+     * @return the edit distance measure
+     * @see #compact(TreeNode)
+     */
+    public double computeDistance(CompactTree tree1, CompactTree tree2) {
+        if (DefaultEditCost.isIntegral(costMetric)) {
+            // the specialized kernel for unit costs
+            return new IntZSTEDistance(tree1, tree2, (DefaultEditCost) costMetric).compute();
+        }
         return new ZSTEDistance(tree1, tree2, costMetric).compute();
     }
 
+    @Override
+    public double computeDistance(TreeNode tree1, TreeNode tree2, double maxDistance) {
+        return computeDistance(compact(tree1), compact(tree2), maxDistance);
+    }
+
+    /**
+     * Computes edit distance between two compact trees, if it is not more than the given maximum.
+     * The pairs whose lower bounds exceed the maximum distance are rejected without computing the distance,
+     * and the pairs of nodes which can't be part of a mapping within the maximum distance are skipped.
+     * @param tree1 the first tree
+     * @param tree2 the second tree
+     * @param maxDistance the maximum distance of interest
+     * @return the edit distance measure if it is less than or equal to {@code maxDistance};
+     * {@link #DISTANCE_EXCEEDED} otherwise
+     */
+    public double computeDistance(CompactTree tree1, CompactTree tree2, double maxDistance) {
+        double minUnitCost = costMetric.getMinUnitCost();
+        double distance;
+        if (minUnitCost <= 0.0) {
+            // can't bound
+            distance = computeDistance(tree1, tree2);
+        } else if (lowerBoundFilter != null
+                && lowerBoundFilter.prune(tree1, tree2, maxDistance, minUnitCost)) {
+            return DISTANCE_EXCEEDED;
+        } else {
+            // the number of unmatched nodes in a mapping within the budget
+            int band = (int) Math.min(Integer.MAX_VALUE, Math.floor(maxDistance / minUnitCost));
+            if (DefaultEditCost.isIntegral(costMetric)) {
+                distance = new IntZSTEDistance(tree1, tree2, (DefaultEditCost) costMetric).compute(band);
+            } else {
+                distance = new ZSTEDistance(tree1, tree2, costMetric).compute(band);
+            }
+        }
+        return distance > maxDistance ? DISTANCE_EXCEEDED : distance;
+    }
+
+    /**
+     * Gets compact representation of the tree. It is built once and cached in the features of tree
+     * @param tree the root node of tree
+     * @return compact tree
+     * @see TreeNode#getFeatures()
+     */
+    public CompactTree compact(TreeNode tree) {
+        return compact(tree, false);
+    }
+
+    /**
+     * Gets compact representation of the tree or its mirror image.
+     * @param tree the root node of tree
+     * @param mirrored true to build the mirror image of the tree
+     * @return compact tree
+     * @see #compact(TreeNode)
+     */
+    public CompactTree compact(TreeNode tree, boolean mirrored) {
+        return tree.getFeatures().getCompactTree(mirrored);
+    }
+
     @Override
     public EditCost<TreeNode> getCostMetric() {
         return costMetric;
     }
 
+    @Override
+    public String getMetricId() {
+        String id = EditDistanceComputer.super.getMetricId();
+        if (DefaultEditCost.isIntegral(costMetric)) {
+            DefaultEditCost cost = (DefaultEditCost) costMetric;
+            id += String.format(":insert=%d,remove=%d,replace=%d,noEdit=%d", cost.insertCost(),
+                    cost.removeCost(), cost.replaceCost(), cost.noEditCost());
+        }
+        return id;
+    }
+
     /**
      * Computes edit distance between two html files
      * @param file1 first html file
@@ -84,22 +198,75 @@ public class ZSTEDComputer implements EditDistanceComputer<TreeNode> {
      * @return an nxn square matrix with edit distance measure
      */
     public double[][] computeDistanceMatrix(List<TreeNode> trees){
+        int n = trees.size();
+        return ((DenseMatrix) computeDistanceMatrix(trees, new DenseMatrix(n, n))).getTable();
+    }
+
+    /**
+     * Computes edit distances between trees into the given matrix.
+     * A symmetric matrix can be used only when the cost metric is symmetric.
+     * @param trees list of trees who's edit distance is to be computed
+     * @param distanceMatrix an nxn matrix to store the edit distance measure
+     * @return the distance matrix
+     * @see edu.usc.irds.autoext.matrix.PackedSymmetricMatrix
+     */
+    public Matrix computeDistanceMatrix(List<TreeNode> trees, Matrix distanceMatrix){
+        return computeDistanceMatrix(trees, distanceMatrix, this::computeDistance);
+    }
+
+    /**
+     * Computes edit distances between trees, if they are not more than the given maximum.
+     * @param trees list of trees who's edit distance is to be computed
+     * @param maxDistance the maximum distance of interest
+     * @return an nxn square matrix with edit distance measure, the distances exceeding
+     * the maximum are set to {@link #DISTANCE_EXCEEDED}
+     * @see #computeDistance(CompactTree, CompactTree, double)
+     */
+    public double[][] computeDistanceMatrix(List<TreeNode> trees, double maxDistance){
+        int n = trees.size();
+        return ((DenseMatrix) computeDistanceMatrix(trees, new DenseMatrix(n, n), maxDistance)).getTable();
+    }
 
+    /**
+     * Computes edit distances between trees into the given matrix, if they are not more than the given maximum.
+     * The pairs rejected by the lower bound filter are counted by the filter.
+     * @param trees list of trees who's edit distance is to be computed
+     * @param distanceMatrix an nxn matrix to store the edit distance measure
+     * @param maxDistance the maximum distance of interest
+     * @return the distance matrix, the distances exceeding the maximum are set to {@link #DISTANCE_EXCEEDED}
+     * @see #getLowerBoundFilter()
+     */
+    public Matrix computeDistanceMatrix(List<TreeNode> trees, Matrix distanceMatrix, double maxDistance){
+        return computeDistanceMatrix(trees, distanceMatrix,
+                (tree1, tree2) -> computeDistance(tree1, tree2, maxDistance));
+    }
+
+    private Matrix computeDistanceMatrix(List<TreeNode> trees, Matrix distanceMatrix,
+                                         ToDoubleBiFunction<CompactTree, CompactTree> distance){
         int n = trees.size();
-        double distanceMatrix[][] = new double[n][n];
+        Checks.check(distanceMatrix.getRows() == n && distanceMatrix.getColumns() == n,
+                "The matrix should be of size n x n");
         boolean symmetricMeasure = getCostMetric().isSymmetric();
+        Checks.check(symmetricMeasure || !distanceMatrix.isSymmetric(),
+                "The symmetric matrix can't store an unsymmetrical measure");
+        CompactTree[] compactTrees = new CompactTree[n];
+        for (int i = 0; i < n; i++) {
+            compactTrees[i] = compact(trees.get(i));
+        }
 
         for (int i = 0; i < n; i++) {
             for (int j = 0; j < n; j++) {
                 if (i == j){
                     //diagonal, same file, distance is zero
-                    distanceMatrix[i][j] = 0.0;
+                    distanceMatrix.set(i, j, 0.0);
                 } else if (symmetricMeasure && i > j) {
                     // lower diagonal and the measure is a symmetry
-                    distanceMatrix[i][j] = distanceMatrix[j][i];
+                    if (!distanceMatrix.isSymmetric()) {
+                        distanceMatrix.set(i, j, distanceMatrix.get(j, i));
+                    }
                 } else {
                     // upper diagonal or unsymmetrical, compute it
-                    distanceMatrix[i][j] = computeDistance(trees.get(i), trees.get(j));
+                    distanceMatrix.set(i, j, distance.applyAsDouble(compactTrees[i], compactTrees[j]));
                 }
             }
         }
@@ -109,10 +276,11 @@ public class ZSTEDComputer implements EditDistanceComputer<TreeNode> {
     /**
      * Computes the edit distance between files in a directory
      * @param inputDir directory of html pages
+     * @param cacheFile distance cache file, null for no cache
      * @throws IOException
      * @throws SAXException
      */
-    private static void computeDistances(File inputDir) throws IOException, SAXException {
+    private static void computeDistances(File inputDir, File cacheFile) throws IOException, SAXException {
 
         File[] files = inputDir.listFiles();
         List<TreeNode> docs = new ArrayList<>();
@@ -126,7 +294,7 @@ public class ZSTEDComputer implements EditDistanceComputer<TreeNode> {
             try(FileReader reader = new FileReader(file)) {
                 parser.parse(new InputSource(reader));
                 htmlPaths.add(file.getAbsolutePath());
-                docs.add(new TreeNode(parser.getDocument(), null));
+                docs.add(new TreeNode(parser.getDocument(), null).detach());
                 parser.reset();
             }
         }
@@ -137,7 +305,16 @@ public class ZSTEDComputer implements EditDistanceComputer<TreeNode> {
 
         ZSTEDComputer edComputer = new ZSTEDComputer();
         StructureSimComputer simComputer = new StructureSimComputer(edComputer);
-        double[][] distMatrix = edComputer.computeDistanceMatrix(docs);
+        double[][] distMatrix;
+        if (cacheFile != null) {
+            try (DistanceCache cache = new DistanceCache(DistanceCache.DEFAULT_MEMORY_CAPACITY, cacheFile)) {
+                CachedEditDistanceComputer cachedComputer = new CachedEditDistanceComputer(edComputer, cache);
+                distMatrix = MatrixUtils.computeSymmetricMatrix(cachedComputer::computeDistance, docs);
+                System.out.println("#Distance Cache : " + cache.getStats());
+            }
+        } else {
+            distMatrix = edComputer.computeDistanceMatrix(docs);
+        }
         int treeSizes[] = new int[n];
         for (int i = 0; i < docs.size(); i++) {
             treeSizes[i] = docs.get(i).getSize();
@@ -171,7 +348,7 @@ public class ZSTEDComputer implements EditDistanceComputer<TreeNode> {
             System.exit(1);
         }
         if (arg.inputDir != null) {
-            computeDistances(arg.inputDir);
+            computeDistances(arg.inputDir, arg.cacheFile);
         } else {
             double distance = computeDistance(arg.html1, arg.html2);
             System.out.println("Distance=" + distance);
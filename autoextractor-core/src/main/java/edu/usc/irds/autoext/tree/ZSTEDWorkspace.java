@@ -0,0 +1,81 @@
+package edu.usc.irds.autoext.tree;
+
+/**
+ * Scratch buffers used by {@link ZSTEDistance}.
+ * The buffers grow to fit the largest pair of trees seen so far and are reused
+ * for all the subsequent computations on the same thread.
+ *
+ * @see ZSTEDistance#releaseWorkspace()
+ */
+class ZSTEDWorkspace {
+
+    private static final ThreadLocal<ZSTEDWorkspace> WORKSPACE = ThreadLocal.withInitial(ZSTEDWorkspace::new);
+
+    private double[] forestDist = new double[0];
+    private double[] treeDist = new double[0];
+    private int[] intForestDist = new int[0];
+    private int[] intTreeDist = new int[0];
+
+    /**
+     * Gets workspace of the current thread
+     * @return workspace
+     */
+    static ZSTEDWorkspace get() {
+        return WORKSPACE.get();
+    }
+
+    /**
+     * Drops the workspace of the current thread, so its buffers can be garbage collected
+     */
+    static void release() {
+        WORKSPACE.remove();
+    }
+
+    /**
+     * Gets forest distance buffer which can hold at least the given number of cells
+     * @param capacity the required capacity
+     * @return buffer for forest distances
+     */
+    double[] forestDist(int capacity) {
+        if (forestDist.length < capacity) {
+            forestDist = new double[capacity];
+        }
+        return forestDist;
+    }
+
+    /**
+     * Gets tree distance buffer which can hold at least the given number of cells
+     * @param capacity the required capacity
+     * @return buffer for tree distances
+     */
+    double[] treeDist(int capacity) {
+        if (treeDist.length < capacity) {
+            treeDist = new double[capacity];
+        }
+        return treeDist;
+    }
+
+    /**
+     * Gets forest distance buffer for integral costs
+     * @param capacity the required capacity
+     * @return buffer for forest distances
+     */
+    int[] intForestDist(int capacity) {
+        if (intForestDist.length < capacity) {
+            intForestDist = new int[capacity];
+        }
+        return intForestDist;
+    }
+
+    /**
+     * Gets tree distance buffer for integral costs
+     * @param capacity the required capacity
+     * @return buffer for tree distances
+     */
+    int[] intTreeDist(int capacity) {
+        if (intTreeDist.length < capacity) {
+            intTreeDist = new int[capacity];
+        }
+        return intTreeDist;
+    }
+}
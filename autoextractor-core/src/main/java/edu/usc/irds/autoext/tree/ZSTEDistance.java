@@ -2,9 +2,6 @@ package edu.usc.irds.autoext.tree;
 
 import edu.usc.irds.autoext.base.EditCost;
 
-import java.util.List;
-import java.util.stream.Collectors;
-
 import static java.lang.Math.min;
 
 /**
@@ -13,13 +10,18 @@ import static java.lang.Math.min;
  */
 public class ZSTEDistance {
 
-    private final List<TreeNode> iNodes;
-    private final List<TreeNode> jNodes;
-    private final List<Integer> iKeyRoots;
-    private final List<Integer> jKeyRoots;
-    private int[] iLs;
-    private int[] jLs;
-    private double[][] treeDist;
+    private final CompactTree iTree;
+    private final CompactTree jTree;
+    private final TreeNode[] iNodes;
+    private final TreeNode[] jNodes;
+    private final int[] iLabels;
+    private final int[] jLabels;
+    private final int[] iLs;
+    private final int[] jLs;
+    private final int jSize;
+    private double[] treeDist;
+    private double[] fd;
+    private int band = Integer.MAX_VALUE;
     private final EditCost<TreeNode> cost;
 
     public ZSTEDistance(TreeNode iTree, TreeNode jTree){
@@ -33,12 +35,27 @@ public class ZSTEDistance {
      * @param cost costs for edit operations
      */
     public ZSTEDistance(TreeNode iTree, TreeNode jTree, EditCost<TreeNode> cost){
+        this(iTree.getFeatures().getCompactTree(false), jTree.getFeatures().getCompactTree(false), cost);
+    }
+
+    /**
+     * Creates a Edit distance matrix for given compact trees.
+     * Both the trees must have been built using same label dictionary.
+     * @param iTree first tree
+     * @param jTree second tree
+     * @param cost costs for edit operations
+     */
+    public ZSTEDistance(CompactTree iTree, CompactTree jTree, EditCost<TreeNode> cost){
         this.cost = cost;
-        this.iNodes = iTree.postOrderTraverse();
-        this.jNodes = jTree.postOrderTraverse();
-        this.treeDist = new double[iNodes.size()][jNodes.size()];
-        this.iKeyRoots = iTree.getKeyRoots().stream().map(TreeNode::getIndex).collect(Collectors.toList());
-        this.jKeyRoots = jTree.getKeyRoots().stream().map(TreeNode::getIndex).collect(Collectors.toList());
+        this.iTree = iTree;
+        this.jTree = jTree;
+        this.iNodes = iTree.nodes();
+        this.jNodes = jTree.nodes();
+        this.iLabels = iTree.labels();
+        this.jLabels = jTree.labels();
+        this.iLs = iTree.leftMostDescendants();
+        this.jLs = jTree.leftMostDescendants();
+        this.jSize = jTree.size();
     }
 
     /**
@@ -46,20 +63,50 @@ public class ZSTEDistance {
      * @return min edit distance between trees
      */
     public double compute(){
-        this.iLs = new int[iNodes.size()];
-        this.jLs = new int[jNodes.size()];
-        for (int i = 0; i < iNodes.size(); i++) {
-            this.iLs[i] = iNodes.get(i).getLeftMostDescendant().getIndex();
-        }
-        for (int i = 0; i < jNodes.size(); i++) {
-            this.jLs[i] = jNodes.get(i).getLeftMostDescendant().getIndex();
+        return compute(Integer.MAX_VALUE);
+    }
+
+    /**
+     * Computes edit distance by considering only the pairs of nodes whose post order indices differ
+     * by at most {@code band}. A mapping which costs at most {@code band} times the minimum insert or remove cost
+     * can't match the nodes that are farther apart, so the result is exact when the distance is within
+     * that limit; otherwise the result is greater than or equal to the actual distance.
+     * The key root pairs whose left paths are entirely outside the band are skipped.
+     * @param band maximum difference between post order indices of the matched nodes
+     * @return min edit distance between trees, or a value larger than that when it exceeds the band
+     */
+    public double compute(int band){
+        if (cost.getNoEditCost() == 0.0 && iTree.isIdentical(jTree)) {
+            // identity mapping costs nothing
+            return 0.0;
         }
-        for (Integer i : iKeyRoots) {
-            for (Integer j : jKeyRoots) {
+        this.band = band;
+        ZSTEDWorkspace workspace = ZSTEDWorkspace.get();
+        this.treeDist = workspace.treeDist(iTree.size() * jSize);
+        this.fd = workspace.forestDist((iTree.size() + 1) * (jSize + 1));
+        for (int i : iTree.keyRoots()) {
+            for (int j : jTree.keyRoots()) {
+                if (iLs[i] - j > band || jLs[j] - i > band) {
+                    // no pair of nodes on these left paths is within the band
+                    continue;
+                }
                 treeDistance(i, j);
             }
         }
-        return this.treeDist[iNodes.size() -1][jNodes.size() -1];
+        double distance = this.treeDist[iTree.size() * jSize - 1];
+        // the buffers belong to the thread, don't hold them any longer
+        this.treeDist = null;
+        this.fd = null;
+        return distance;
+    }
+
+    /**
+     * Releases the scratch buffers retained by the current thread.
+     * The buffers are retained between computations to avoid allocations;
+     * call this to free the memory when the thread is done with distance computations.
+     */
+    public static void releaseWorkspace() {
+        ZSTEDWorkspace.release();
     }
 
     /**
@@ -70,37 +117,49 @@ public class ZSTEDistance {
     private void treeDistance(int i, int j){
         int m = i - iLs[i] + 2;
         int n = j - jLs[j] + 2;
-        double fd[][] = new double[m][n];
+        // fd is a flat (m x n) matrix, the cell (x, y) is at x * n + y
+        double fd[] = this.fd;
 
         int iOffset = iLs[i] - 1;
         int jOffset = jLs[j] - 1;
 
+        fd[0] = 0.0;
         for (int x = 1; x < m; x++) {
             // δ(l(i1)..i, θ) = δ(l(1i)..1-1, θ) + γ(v → λ)
-            fd[x][0] = fd[x-1][0] + cost.getRemoveCost(iNodes.get(x+iOffset));
+            fd[x * n] = fd[(x - 1) * n] + cost.getRemoveCost(iNodes[x + iOffset]);
         }
         for (int y = 1; y < n; y++) {
             //# δ(θ, l(j1)..j) = δ(θ, l(j1)..j-1) + γ(λ → w)
-            fd[0][y] = fd[0][y-1] + cost.getInsertCost(jNodes.get(y+jOffset));
+            fd[y] = fd[y - 1] + cost.getInsertCost(jNodes[y + jOffset]);
         }
 
         for (int x = 1; x < m; x++) {
-            TreeNode i1 = iNodes.get(x + iOffset);
+            int ix = x + iOffset;
+            TreeNode i1 = iNodes[ix];
+            int iLabel = iLabels[ix];
+            int row = ix * jSize;
+            int cur = x * n;
+            int prev = cur - n;
+            double iRemoveCost = cost.getRemoveCost(i1);
+            boolean iOnPath = iLs[i] == iLs[ix];
+            int pRow = (iLs[ix] - 1 - iOffset) * n;
             for (int y = 1; y < n; y++) {
-                TreeNode j1 = jNodes.get(y + jOffset);
-                double removeCost = fd[x - 1][y] + cost.getRemoveCost(i1);
-                double insertCost = fd[x][y - 1] + cost.getInsertCost(j1);
+                int jy = y + jOffset;
+                TreeNode j1 = jNodes[jy];
+                double removeCost = fd[prev + y] + iRemoveCost;
+                double insertCost = fd[cur + y - 1] + cost.getInsertCost(j1);
 
                 // only need to check if x is an ancestor of i
                 // and y is an ancestor of j
-                if (iLs[i] == iLs[x+iOffset] && jLs[j] == jLs[y+jOffset]){
-                    double replacementCost = fd[x - 1][y - 1] + (i1.getNodeName().equals(j1.getNodeName()) ? cost.getNoEditCost() : cost.getReplaceCost(i1, j1));
-                    fd[x][y] = min(min(removeCost, insertCost), replacementCost);
-                    treeDist[x+iOffset][y+jOffset] = fd[x][y];
+                if (iOnPath && jLs[j] == jLs[jy]){
+                    double replacementCost = fd[prev + y - 1] + (iLabel == jLabels[jy] ? cost.getNoEditCost() : cost.getReplaceCost(i1, j1));
+                    fd[cur + y] = min(min(removeCost, insertCost), replacementCost);
+                    treeDist[row + jy] = fd[cur + y];
                 } else {
-                    int p = iLs[x+iOffset]-1-iOffset;
-                    int q = jLs[y+jOffset]-1-jOffset;
-                    fd[x][y] = min(min(removeCost, insertCost), fd[p][q] + treeDist[x+iOffset][y+jOffset]);
+                    int q = jLs[jy]-1-jOffset;
+                    // subtree distances outside the band are not computed
+                    double subTreeDist = Math.abs(ix - jy) > band ? Double.POSITIVE_INFINITY : treeDist[row + jy];
+                    fd[cur + y] = min(min(removeCost, insertCost), fd[pRow + q] + subTreeDist);
                 }
             }
         }
@@ -0,0 +1,506 @@
+package edu.usc.irds.autoext.utils;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * A cache of pairwise distances keyed by (fingerprint1, fingerprint2, metric id).
+ * The cache has two tiers : an in-memory LRU tier with a fixed capacity and an optional on-disk tier
+ * which keeps all the distances and survives the restarts. The on-disk tier is an open addressing
+ * hash table in a file, so the lookups don't need the whole table in memory.
+ * This class is thread safe. The in-memory tier is split into segments having their own locks
+ * and the on-disk tier has a read-write lock of its own, so the lookups by different threads
+ * go in parallel and the disk is never accessed while holding a lock of the in-memory tier.
+ * The distances put in the cache are written to disk in batches, so the threads putting them
+ * don't wait for each other.
+ */
+public class DistanceCache implements Closeable {
+
+    public static final Logger LOG = LoggerFactory.getLogger(DistanceCache.class);
+
+    /** The number of distances kept in memory when the size is not known in advance */
+    public static final int DEFAULT_MEMORY_CAPACITY = 100_000;
+    /** The large caches are split into this many segments */
+    private static final int MAX_SEGMENTS = 16;
+    /** The smallest capacity of a segment, the small caches have a single segment */
+    private static final int MIN_SEGMENT_CAPACITY = 1024;
+    /** The number of distances written to disk at once */
+    private static final int WRITE_BATCH = 1024;
+
+    private final List<Map<Key, Double>> segments;
+    private final DiskTable disk;
+    private final ReadWriteLock diskLock = new ReentrantReadWriteLock();
+    /** The distances not written to disk yet, they are removed only after they are written */
+    private final Map<Key, Double> pendingWrites = new ConcurrentHashMap<>();
+    private final AtomicLong memoryHits = new AtomicLong();
+    private final AtomicLong diskHits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    /**
+     * Creates a memory only cache
+     * @param memoryCapacity maximum number of distances to be kept in memory
+     */
+    public DistanceCache(int memoryCapacity) {
+        this.segments = createSegments(memoryCapacity);
+        this.disk = null;
+    }
+
+    /**
+     * Creates a cache
+     * @param memoryCapacity maximum number of distances to be kept in memory
+     * @param diskFile file for the on-disk tier. The distances stored in this file by the previous runs are
+     *                 available to this cache. Set it to {@code null} for a memory only cache
+     * @throws IOException when the file can't be opened
+     */
+    public DistanceCache(int memoryCapacity, File diskFile) throws IOException {
+        this.segments = createSegments(memoryCapacity);
+        this.disk = diskFile == null ? null : new DiskTable(diskFile);
+    }
+
+    private List<Map<Key, Double>> createSegments(int memoryCapacity) {
+        // power of two, so that the segment is picked by masking the hash
+        int count = Integer.highestOneBit(Math.max(1, Math.min(MAX_SEGMENTS, memoryCapacity / MIN_SEGMENT_CAPACITY)));
+        List<Map<Key, Double>> segments = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int capacity = memoryCapacity / count + (i < memoryCapacity % count ? 1 : 0);
+            segments.add(createMemory(capacity));
+        }
+        return segments;
+    }
+
+    private Map<Key, Double> createMemory(int memoryCapacity) {
+        // access ordered map, the least recently used entry is evicted
+        return new LinkedHashMap<Key, Double>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Double> eldest) {
+                if (size() > memoryCapacity) {
+                    evictions.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    private Map<Key, Double> segment(Key key) {
+        return segments.get((int) (key.hash() >>> 32) & (segments.size() - 1));
+    }
+
+    /**
+     * Gets the cached distance
+     * @param fingerprint1 the fingerprint of first object
+     * @param fingerprint2 the fingerprint of second object
+     * @param metricId the id of distance metric
+     * @return the distance if it is in the cache; {@link Double#NaN} otherwise
+     */
+    public double get(long fingerprint1, long fingerprint2, long metricId) {
+        Key key = new Key(fingerprint1, fingerprint2, metricId);
+        Map<Key, Double> segment = segment(key);
+        Double distance;
+        synchronized (segment) {
+            distance = segment.get(key);
+        }
+        if (distance != null) {
+            memoryHits.incrementAndGet();
+            return distance;
+        }
+        if (disk != null) {
+            // checked before the disk, the pending distances are removed after they are written
+            Double pending = pendingWrites.get(key);
+            double value = pending == null ? Double.NaN : pending;
+            if (pending == null) {
+                diskLock.readLock().lock();
+                try {
+                    value = disk.get(key);
+                } catch (IOException e) {
+                    LOG.error(e.getMessage(), e);
+                } finally {
+                    diskLock.readLock().unlock();
+                }
+            }
+            if (!Double.isNaN(value)) {
+                diskHits.incrementAndGet();
+                synchronized (segment) {
+                    segment.put(key, value);
+                }
+                return value;
+            }
+        }
+        misses.incrementAndGet();
+        return Double.NaN;
+    }
+
+    /**
+     * Stores the distance in the cache
+     * @param fingerprint1 the fingerprint of first object
+     * @param fingerprint2 the fingerprint of second object
+     * @param metricId the id of distance metric
+     * @param distance the distance
+     */
+    public void put(long fingerprint1, long fingerprint2, long metricId, double distance) {
+        Key key = new Key(fingerprint1, fingerprint2, metricId);
+        Map<Key, Double> segment = segment(key);
+        synchronized (segment) {
+            segment.put(key, distance);
+        }
+        if (disk != null) {
+            pendingWrites.put(key, distance);
+            // one of the threads writes the batch, the others go on
+            if (pendingWrites.size() >= WRITE_BATCH && diskLock.writeLock().tryLock()) {
+                try {
+                    writePending();
+                } finally {
+                    diskLock.writeLock().unlock();
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes the pending distances to disk. The caller must hold the write lock of disk
+     */
+    private void writePending() {
+        Iterator<Map.Entry<Key, Double>> iterator = pendingWrites.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<Key, Double> entry = iterator.next();
+            try {
+                disk.put(entry.getKey(), entry.getValue());
+            } catch (IOException e) {
+                LOG.error(e.getMessage(), e);
+            }
+            // unless it is updated meanwhile
+            pendingWrites.remove(entry.getKey(), entry.getValue());
+        }
+    }
+
+    public long getMemoryHits() {
+        return memoryHits.get();
+    }
+
+    public long getDiskHits() {
+        return diskHits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    /**
+     * Gets number of distances in the in-memory tier
+     * @return number of distances
+     */
+    public long getMemorySize() {
+        long size = 0;
+        for (Map<Key, Double> segment : segments) {
+            synchronized (segment) {
+                size += segment.size();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Gets number of distances in the on-disk tier
+     * @return number of distances, 0 for memory only cache
+     */
+    public long getDiskSize() {
+        if (disk == null) {
+            return 0;
+        }
+        diskLock.writeLock().lock();
+        try {
+            writePending();
+            return disk.count;
+        } finally {
+            diskLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Gets a human readable summary of cache statistics
+     * @return the statistics
+     */
+    public String getStats() {
+        return String.format("memory hits=%d, disk hits=%d, misses=%d, evictions=%d, memory size=%d, disk size=%d",
+                getMemoryHits(), getDiskHits(), getMisses(), getEvictions(), getMemorySize(), getDiskSize());
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (disk != null) {
+            diskLock.writeLock().lock();
+            try {
+                writePending();
+                disk.close();
+            } finally {
+                diskLock.writeLock().unlock();
+            }
+        }
+    }
+
+    /**
+     * The key of cache
+     */
+    private static class Key {
+        private final long fingerprint1;
+        private final long fingerprint2;
+        private final long metricId;
+
+        Key(long fingerprint1, long fingerprint2, long metricId) {
+            this.fingerprint1 = fingerprint1;
+            this.fingerprint2 = fingerprint2;
+            this.metricId = metricId;
+        }
+
+        long hash() {
+            return Hashing.combine(Hashing.combine(Hashing.mix(fingerprint1), fingerprint2), metricId);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) o;
+            return fingerprint1 == key.fingerprint1 && fingerprint2 == key.fingerprint2
+                    && metricId == key.metricId;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(fingerprint1, fingerprint2, metricId);
+        }
+    }
+
+    /**
+     * Open addressing hash table with linear probing, stored in a file.
+     * The file has a header followed by the slots; every slot has a state, three keys and a value.
+     * The table is rehashed into a file of double capacity when it is 70% full.
+     * The header has the number of occupied slots and a flag which is set while the table is open.
+     * The count in header is updated when the table is closed, so it is recomputed from the slots only
+     * when the flag shows that the table was not closed.
+     * The lookups may run concurrently, the updates need exclusive access.
+     */
+    private static class DiskTable implements Closeable {
+
+        private static final long MAGIC = 0x4155544f45584443L; // AUTOEXDC
+        private static final int VERSION = 1;
+        private static final int HEADER_SIZE = 32;
+        private static final int CLOSED = 0;
+        private static final int OPEN = 1;
+        private static final int SLOT_SIZE = 40;
+        private static final int SLOTS_PER_READ = 1024;
+        private static final long INITIAL_CAPACITY = 1 << 16;
+        private static final double MAX_LOAD = 0.7;
+
+        private final File file;
+        private RandomAccessFile raf;
+        private FileChannel channel;
+        private long capacity;
+        private long count;
+
+        DiskTable(File file) throws IOException {
+            this.file = file;
+            boolean exists = file.exists() && file.length() >= HEADER_SIZE;
+            open(file, exists ? -1 : INITIAL_CAPACITY);
+        }
+
+        /**
+         * Opens the table file
+         * @param file the file
+         * @param newCapacity capacity for creating a new table; -1 to read the existing table
+         */
+        private void open(File file, long newCapacity) throws IOException {
+            this.raf = new RandomAccessFile(file, "rw");
+            this.channel = raf.getChannel();
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            if (newCapacity < 0) {
+                readFully(header, 0);
+                Checks.check(header.getLong() == MAGIC, "Not a distance cache file :" + file);
+                Checks.check(header.getInt() == VERSION, "Unsupported distance cache version :" + file);
+                boolean wasOpen = header.getInt() == OPEN;
+                this.capacity = header.getLong();
+                this.count = header.getLong();
+                if (wasOpen) {
+                    // the stored count is stale when the previous run didn't close the table
+                    this.count = countSlots();
+                    LOG.warn("Distance cache {} was not closed properly, found {} distances", file, count);
+                }
+            } else {
+                this.capacity = newCapacity;
+                this.count = 0;
+                raf.setLength(HEADER_SIZE + capacity * SLOT_SIZE);
+            }
+            writeHeader(OPEN);
+        }
+
+        private void writeHeader(int state) throws IOException {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putLong(MAGIC).putInt(VERSION).putInt(state).putLong(capacity).putLong(count);
+            header.flip();
+            channel.write(header, 0);
+        }
+
+        /**
+         * Reads from the file into the remaining space of buffer, and flips the buffer
+         */
+        private void readFully(ByteBuffer buffer, long position) throws IOException {
+            int start = buffer.position();
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, position + buffer.position() - start) < 0) {
+                    break;
+                }
+            }
+            buffer.flip();
+        }
+
+        /**
+         * Visits all the occupied slots of the table
+         * @param consumer consumer of the keys and values
+         */
+        private void forEachSlot(SlotConsumer consumer) throws IOException {
+            ByteBuffer buffer = ByteBuffer.allocate(SLOT_SIZE * SLOTS_PER_READ);
+            long position = HEADER_SIZE;
+            long end = HEADER_SIZE + capacity * SLOT_SIZE;
+            while (position < end) {
+                buffer.clear();
+                buffer.limit((int) Math.min(buffer.capacity(), end - position));
+                readFully(buffer, position);
+                position += buffer.limit();
+                while (buffer.remaining() >= SLOT_SIZE) {
+                    long state = buffer.getLong();
+                    Key key = new Key(buffer.getLong(), buffer.getLong(), buffer.getLong());
+                    double value = buffer.getDouble();
+                    if (state != 0) {
+                        consumer.accept(key, value);
+                    }
+                }
+            }
+        }
+
+        private long countSlots() throws IOException {
+            long[] occupied = {0};
+            forEachSlot((key, value) -> occupied[0]++);
+            return occupied[0];
+        }
+
+        /**
+         * Finds the slot of the key
+         * @param slot buffer for reading the slots; the slot at the returned index is left in it
+         * @return index of the slot having the key, or the index of empty slot where the key should go;
+         * -1 if the table is full and doesn't have the key
+         */
+        private long find(Key key, ByteBuffer slot) throws IOException {
+            long index = key.hash() & (capacity - 1);
+            for (long probes = 0; probes < capacity; probes++) {
+                slot.clear();
+                readFully(slot, HEADER_SIZE + index * SLOT_SIZE);
+                if (slot.getLong() == 0) {
+                    return index;
+                }
+                if (slot.getLong() == key.fingerprint1 && slot.getLong() == key.fingerprint2
+                        && slot.getLong() == key.metricId) {
+                    return index;
+                }
+                index = (index + 1) & (capacity - 1);
+            }
+            return -1;
+        }
+
+        double get(Key key) throws IOException {
+            ByteBuffer slot = ByteBuffer.allocate(SLOT_SIZE);
+            if (find(key, slot) < 0) {
+                return Double.NaN;
+            }
+            slot.rewind();
+            if (slot.getLong() == 0) {
+                return Double.NaN;
+            }
+            slot.position(SLOT_SIZE - 8);
+            return slot.getDouble();
+        }
+
+        void put(Key key, double value) throws IOException {
+            ByteBuffer slot = ByteBuffer.allocate(SLOT_SIZE);
+            long index = find(key, slot);
+            boolean isNew = true;
+            if (index >= 0) {
+                slot.rewind();
+                isNew = slot.getLong() == 0;
+            }
+            if (isNew && count + 1 > capacity * MAX_LOAD) {
+                grow();
+                index = find(key, slot);
+            }
+            slot.clear();
+            slot.putLong(1).putLong(key.fingerprint1).putLong(key.fingerprint2)
+                    .putLong(key.metricId).putDouble(value);
+            slot.flip();
+            channel.write(slot, HEADER_SIZE + index * SLOT_SIZE);
+            if (isNew) {
+                count++;
+            }
+        }
+
+        /**
+         * Rehashes the table into a new file of double capacity
+         */
+        private void grow() throws IOException {
+            File tmpFile = new File(file.getPath() + ".tmp");
+            Files.deleteIfExists(tmpFile.toPath());
+            DiskTable bigger = new DiskTable(tmpFile, capacity * 2);
+            forEachSlot(bigger::put);
+            bigger.close();
+            close();
+            Files.move(tmpFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            LOG.debug("Rehashed the distance cache to capacity {}", capacity * 2);
+            open(file, -1);
+        }
+
+        private DiskTable(File file, long capacity) throws IOException {
+            this.file = file;
+            open(file, capacity);
+        }
+
+        @Override
+        public void close() throws IOException {
+            writeHeader(CLOSED);
+            channel.close();
+            raf.close();
+        }
+    }
+
+    /**
+     * Consumer of the slots of {@link DiskTable}
+     */
+    private interface SlotConsumer {
+        void accept(Key key, double value) throws IOException;
+    }
+}
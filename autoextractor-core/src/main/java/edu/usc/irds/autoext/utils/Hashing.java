@@ -0,0 +1,45 @@
+package edu.usc.irds.autoext.utils;
+
+/**
+ * Utilities for computing 64 bit hashes
+ */
+public class Hashing {
+
+    /**
+     * Mixes the bits of the given value. This is the 64 bit finalizer of MurmurHash3
+     * @param h the value
+     * @return the hash of value
+     */
+    public static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    /**
+     * Combines a hash with the next value in a sequence
+     * @param hash the hash of values seen so far
+     * @param value the next value
+     * @return the hash of sequence including the value
+     */
+    public static long combine(long hash, long value) {
+        return mix(hash * 31 + value);
+    }
+
+    /**
+     * Computes the 64 bit hash of a string by combining its characters.
+     * Unlike {@link String#hashCode()}, the distinct strings are unlikely to have the same hash
+     * @param value the string
+     * @return the hash of string
+     */
+    public static long hash(CharSequence value) {
+        long hash = mix(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            hash = combine(hash, value.charAt(i));
+        }
+        return hash;
+    }
+}
@@ -1,5 +1,8 @@
 package edu.usc.irds.autoext.utils;
 
+import edu.usc.irds.autoext.matrix.DenseMatrix;
+import edu.usc.irds.autoext.matrix.Matrix;
+
 import java.util.List;
 import java.util.function.BiFunction;
 
@@ -17,19 +20,35 @@ public class MatrixUtils {
      */
     public static <T> double[][] computeSymmetricMatrix(BiFunction<T,T, Double> function, List<T> objs){
         int n = objs.size();
-        double[][] table = new double[n][n];
+        return ((DenseMatrix) computeSymmetricMatrix(function, objs, new DenseMatrix(n, n))).getTable();
+    }
+
+    /**
+     * Computes the symmetrical matrix into the given matrix.
+     * @param function the function that can be applied to a pair of objects and returns a double
+     * @param objs list of objects
+     * @param result the matrix to store the result, of size n x n
+     * @param <T> the object type
+     * @return the result matrix
+     */
+    public static <T> Matrix computeSymmetricMatrix(BiFunction<T,T, Double> function, List<T> objs,
+                                                    Matrix result){
+        int n = objs.size();
+        Checks.check(result.getRows() == n && result.getColumns() == n, "The matrix should be of size n x n");
+        boolean packed = result.isSymmetric();
         for (int i = 0; i < n; i++) {
             T objI = objs.get(i);
-            table[i][i] = function.apply(objI, objI); // the principal diagonal element
-            for (int j = i + 1; j < objs.size(); j++) {
-                table[i][j] = function.apply(objI, objs.get(j)); // the upper diagonal
-                table[j][i] = table[i][j]; // the lower diagonal
+            result.set(i, i, function.apply(objI, objI)); // the principal diagonal element
+            for (int j = i + 1; j < n; j++) {
+                result.set(i, j, function.apply(objI, objs.get(j))); // the upper diagonal
+                if (!packed) {
+                    result.set(j, i, result.get(i, j)); // the lower diagonal
+                }
             }
         }
-        return table;
+        return result;
     }
 
-
     /**
      * Prints the matrix to STDOUT
      * @param matrix the matrix
@@ -42,4 +61,17 @@ public class MatrixUtils {
             System.out.println();
         }
     }
+
+    /**
+     * Prints the matrix to STDOUT
+     * @param matrix the matrix
+     */
+    public static void printMatrix(Matrix matrix) {
+        for (int i = 0; i < matrix.getRows(); i++) {
+            for (int j = 0; j < matrix.getColumns(); j++) {
+                System.out.printf("%5.2f\t", matrix.get(i, j));
+            }
+            System.out.println();
+        }
+    }
 }
@@ -0,0 +1,355 @@
+package edu.usc.irds.autoext.utils;
+
+import edu.usc.irds.autoext.base.EditDistanceComputer;
+import edu.usc.irds.autoext.matrix.DenseMatrix;
+import edu.usc.irds.autoext.matrix.Matrix;
+import edu.usc.irds.autoext.matrix.NeighborLists;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.BiFunction;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Computes the symmetric matrices of pairwise measures in parallel.
+ * The upper triangle of the matrix is split into square tiles which are computed on a fork join pool.
+ * The cost of computing a pair varies a lot (for example the tree edit distance grows with the product
+ * of tree sizes), so the tiles are split between the tasks by their estimated costs rather than
+ * by their number.
+ *
+ * @see MatrixUtils#computeSymmetricMatrix(BiFunction, List)
+ */
+public class ParallelMatrixBuilder {
+
+    public static final int DEFAULT_TILE_SIZE = 32;
+
+    private final int parallelism;
+    private final int tileSize;
+
+    /**
+     * Creates a builder which uses all the available processors
+     */
+    public ParallelMatrixBuilder() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Creates a builder
+     * @param parallelism number of threads to be used
+     */
+    public ParallelMatrixBuilder(int parallelism) {
+        this(parallelism, DEFAULT_TILE_SIZE);
+    }
+
+    /**
+     * Creates a builder
+     * @param parallelism number of threads to be used
+     * @param tileSize number of rows and columns in a tile
+     */
+    public ParallelMatrixBuilder(int parallelism, int tileSize) {
+        Checks.check(parallelism > 0, "parallelism should be positive");
+        Checks.check(tileSize > 0, "tileSize should be positive");
+        this.parallelism = parallelism;
+        this.tileSize = tileSize;
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * Computes a symmetric matrix by applying the function on all the pairs of objects.
+     * The function is applied on the pairs in the upper triangle including the principal diagonal,
+     * it must be safe to call from several threads.
+     * @param function the function which is applied on pairs of objects
+     * @param objs list of objects
+     * @param costEstimate estimated cost of an object. The cost of a pair is estimated as the product of
+     *                     costs of its objects; for example, the tree size for the tree edit distance
+     * @param <T> the object type
+     * @return 2D matrix computed by applying function on pairs of objects.
+     */
+    public <T> double[][] computeSymmetricMatrix(BiFunction<T, T, Double> function, List<T> objs,
+                                                 ToDoubleFunction<T> costEstimate) {
+        int n = objs.size();
+        DenseMatrix result = new DenseMatrix(n, n);
+        computeSymmetricMatrix(function, objs, costEstimate, result);
+        return result.getTable();
+    }
+
+    /**
+     * Computes a symmetric matrix into the given matrix by applying the function on all the pairs of objects.
+     * @param function the function which is applied on pairs of objects
+     * @param objs list of objects
+     * @param costEstimate estimated cost of an object
+     * @param result the matrix to store the result, of size n x n
+     * @param <T> the object type
+     * @return the result matrix
+     * @see #computeSymmetricMatrix(BiFunction, List, ToDoubleFunction)
+     */
+    public <T> Matrix computeSymmetricMatrix(BiFunction<T, T, Double> function, List<T> objs,
+                                             ToDoubleFunction<T> costEstimate, Matrix result) {
+        return computeSymmetricMatrix(function, objs, costEstimate, result, 0);
+    }
+
+    /**
+     * Computes the pairs of a symmetric matrix which involve the objects at or after the given index.
+     * The cells of pairs of the objects before the index are expected to be filled already, which lets
+     * the new objects be appended to the list without computing all the pairs again.
+     * @param function the function which is applied on pairs of objects
+     * @param objs list of objects
+     * @param costEstimate estimated cost of an object
+     * @param result the matrix to store the result, of size n x n
+     * @param from index of the first new object
+     * @param <T> the object type
+     * @return the result matrix
+     * @see #computeSymmetricMatrix(BiFunction, List, ToDoubleFunction, Matrix)
+     */
+    public <T> Matrix computeSymmetricMatrix(BiFunction<T, T, Double> function, List<T> objs,
+                                             ToDoubleFunction<T> costEstimate, Matrix result, int from) {
+        return computeSymmetricMatrix(function, objs, costEstimate, result, from, null);
+    }
+
+    /**
+     * Computes the pairs of a symmetric matrix which involve the objects at or after the given index,
+     * and records the completed tiles in the checkpoint. The tiles which were completed by an earlier
+     * computation of the same job are skipped, their cells are expected to be in the matrix already.
+     * @param function the function which is applied on pairs of objects
+     * @param objs list of objects
+     * @param costEstimate estimated cost of an object
+     * @param result the matrix to store the result, of size n x n; it is persisted by the checkpoint
+     * @param from index of the first new object
+     * @param checkpoint the checkpoint, null for no checkpoints
+     * @param <T> the object type
+     * @return the result matrix
+     * @throws java.io.UncheckedIOException when the checkpoint can't be saved
+     * @see TileCheckpoint
+     */
+    public <T> Matrix computeSymmetricMatrix(BiFunction<T, T, Double> function, List<T> objs,
+                                             ToDoubleFunction<T> costEstimate, Matrix result, int from,
+                                             TileCheckpoint checkpoint) {
+        int n = objs.size();
+        Checks.check(result.getRows() == n && result.getColumns() == n, "The matrix should be of size n x n");
+        boolean packed = result.isSymmetric();
+        compute(function, objs, costEstimate, from, checkpoint, (i, j, value) -> {
+            result.set(i, j, value);
+            if (!packed) {
+                result.set(j, i, value);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Computes a symmetric matrix of the edit distances which are not more than the given maximum.
+     * The computers may reject the pairs which are provably farther than the maximum without computing
+     * their distances, see {@link edu.usc.irds.autoext.tree.ZSTEDComputer#getLowerBoundFilter()}.
+     * @param computer the edit distance computer, its cost metric must be symmetric
+     * @param objs list of objects
+     * @param costEstimate estimated cost of an object
+     * @param maxDistance the maximum distance of interest
+     * @param result the matrix to store the result, of size n x n
+     * @param <T> the object type
+     * @return the result matrix, the distances exceeding the maximum are set to
+     * {@link EditDistanceComputer#DISTANCE_EXCEEDED}
+     */
+    public <T> Matrix computeDistanceMatrix(EditDistanceComputer<T> computer, List<T> objs,
+                                            ToDoubleFunction<T> costEstimate, double maxDistance, Matrix result) {
+        Checks.check(computer.getCostMetric().isSymmetric(), "The distance measure should be symmetric");
+        return computeSymmetricMatrix((obj1, obj2) -> computer.computeDistance(obj1, obj2, maxDistance),
+                objs, costEstimate, result);
+    }
+
+    /**
+     * Computes the nearest neighbors of objects by applying the function on all the pairs of objects.
+     * The values are offered to the lists as soon as they are computed, so the n x n matrix is never stored.
+     * @param function the function which is applied on pairs of objects, a symmetric similarity measure
+     * @param objs list of objects
+     * @param costEstimate estimated cost of an object
+     * @param result the lists to store the neighbors, of size n
+     * @param <T> the object type
+     * @return the result lists
+     * @see #computeSymmetricMatrix(BiFunction, List, ToDoubleFunction)
+     */
+    public <T> NeighborLists computeNeighborLists(BiFunction<T, T, Double> function, List<T> objs,
+                                                  ToDoubleFunction<T> costEstimate, NeighborLists result) {
+        return computeNeighborLists(function, objs, costEstimate, result, 0);
+    }
+
+    /**
+     * Computes the pairs which involve the objects at or after the given index and offers them to the
+     * neighbor lists. The lists are expected to have the neighbors among the objects before the index already.
+     * @param function the function which is applied on pairs of objects, a symmetric similarity measure
+     * @param objs list of objects
+     * @param costEstimate estimated cost of an object
+     * @param result the lists to store the neighbors, of size n
+     * @param from index of the first new object
+     * @param <T> the object type
+     * @return the result lists
+     * @see #computeNeighborLists(BiFunction, List, ToDoubleFunction, NeighborLists)
+     */
+    public <T> NeighborLists computeNeighborLists(BiFunction<T, T, Double> function, List<T> objs,
+                                                  ToDoubleFunction<T> costEstimate, NeighborLists result,
+                                                  int from) {
+        Checks.check(result.size() == objs.size(), "The neighbor lists should be of size n");
+        compute(function, objs, costEstimate, from, null, (i, j, value) -> {
+            result.offer(i, j, value);
+            if (i != j) {
+                result.offer(j, i, value);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Applies the function on the pairs in the upper triangle and passes the values to the consumer
+     * @param function the function which is applied on pairs of objects
+     * @param objs list of objects
+     * @param costEstimate estimated cost of an object
+     * @param from the pairs (i, j) with j before this index are skipped
+     * @param checkpoint the checkpoint for recording the completed tiles, may be null
+     * @param consumer the consumer of values, it is called from several threads
+     * @param <T> the object type
+     */
+    private <T> void compute(BiFunction<T, T, Double> function, List<T> objs,
+                             ToDoubleFunction<T> costEstimate, int from, TileCheckpoint checkpoint,
+                             CellConsumer consumer) {
+        int n = objs.size();
+        Checks.check(from >= 0 && from <= n, "from should be in [0, n]");
+        if (n == from) {
+            return;
+        }
+        int numBlocks = (n + tileSize - 1) / tileSize;
+        double[] blockCosts = new double[numBlocks];
+        // the costs of columns which are computed
+        double[] newBlockCosts = new double[numBlocks];
+        for (int i = 0; i < n; i++) {
+            double cost = Math.max(1.0, costEstimate.applyAsDouble(objs.get(i)));
+            blockCosts[i / tileSize] += cost;
+            if (i >= from) {
+                newBlockCosts[i / tileSize] += cost;
+            }
+        }
+
+        List<int[]> tiles = new ArrayList<>();
+        List<Double> costs = new ArrayList<>();
+        for (int bi = 0; bi < numBlocks; bi++) {
+            for (int bj = Math.max(bi, from / tileSize); bj < numBlocks; bj++) {
+                tiles.add(new int[]{bi, bj});
+                // only half of the diagonal tiles is computed
+                costs.add(blockCosts[bi] * newBlockCosts[bj] / (bi == bj ? 2 : 1));
+            }
+        }
+        if (checkpoint != null) {
+            checkpoint.start(n, from, tileSize, tiles.size());
+        }
+        double[] cumulativeCosts = new double[tiles.size() + 1];
+        for (int t = 0; t < tiles.size(); t++) {
+            // the completed tiles are skipped
+            double cost = checkpoint != null && checkpoint.isCompleted(t) ? 0 : costs.get(t);
+            cumulativeCosts[t + 1] = cumulativeCosts[t] + cost;
+        }
+        // several tasks per thread, so the idle threads can steal the work
+        double minTaskCost = cumulativeCosts[tiles.size()] / (parallelism * 8);
+
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            pool.invoke(new TileTask<>(function, objs, from, tileSize, checkpoint, consumer, tiles,
+                    cumulativeCosts, 0, tiles.size(), minTaskCost));
+        } finally {
+            pool.shutdown();
+        }
+        if (checkpoint != null) {
+            try {
+                checkpoint.save();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    /**
+     * Receives the computed values of the cells in the upper triangle
+     */
+    private interface CellConsumer {
+        void accept(int i, int j, double value);
+    }
+
+    /**
+     * Computes a range of tiles, splits the range into two halves of equal cost when it is expensive
+     */
+    private static class TileTask<T> extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final BiFunction<T, T, Double> function;
+        private final List<T> objs;
+        private final int from;
+        private final int tileSize;
+        private final TileCheckpoint checkpoint;
+        private final CellConsumer consumer;
+        private final List<int[]> tiles;
+        private final double[] cumulativeCosts;
+        private final int start;
+        private final int end;
+        private final double minTaskCost;
+
+        TileTask(BiFunction<T, T, Double> function, List<T> objs, int from, int tileSize,
+                 TileCheckpoint checkpoint, CellConsumer consumer, List<int[]> tiles, double[] cumulativeCosts,
+                 int start, int end, double minTaskCost) {
+            this.function = function;
+            this.objs = objs;
+            this.from = from;
+            this.tileSize = tileSize;
+            this.checkpoint = checkpoint;
+            this.consumer = consumer;
+            this.tiles = tiles;
+            this.cumulativeCosts = cumulativeCosts;
+            this.start = start;
+            this.end = end;
+            this.minTaskCost = minTaskCost;
+        }
+
+        @Override
+        protected void compute() {
+            double cost = cumulativeCosts[end] - cumulativeCosts[start];
+            if (end - start > 1 && cost > minTaskCost) {
+                // split at the middle of the cost
+                double half = cumulativeCosts[start] + cost / 2;
+                int mid = start + 1;
+                while (mid < end - 1 && cumulativeCosts[mid + 1] <= half) {
+                    mid++;
+                }
+                invokeAll(new TileTask<>(function, objs, from, tileSize, checkpoint, consumer, tiles,
+                                cumulativeCosts, start, mid, minTaskCost),
+                        new TileTask<>(function, objs, from, tileSize, checkpoint, consumer, tiles,
+                                cumulativeCosts, mid, end, minTaskCost));
+            } else {
+                for (int t = start; t < end; t++) {
+                    if (checkpoint == null) {
+                        computeTile(tiles.get(t));
+                    } else if (!checkpoint.isCompleted(t)) {
+                        computeTile(tiles.get(t));
+                        checkpoint.complete(t);
+                    }
+                }
+            }
+        }
+
+        private void computeTile(int[] tile) {
+            int n = objs.size();
+            int rowStart = tile[0] * tileSize;
+            int rowEnd = Math.min(n, rowStart + tileSize);
+            int colStart = tile[1] * tileSize;
+            int colEnd = Math.min(n, colStart + tileSize);
+            for (int i = rowStart; i < rowEnd; i++) {
+                T objI = objs.get(i);
+                for (int j = Math.max(Math.max(i, colStart), from); j < colEnd; j++) {
+                    consumer.accept(i, j, function.apply(objI, objs.get(j)));
+                }
+            }
+        }
+    }
+}
@@ -1,5 +1,7 @@
 package edu.usc.irds.autoext.utils;
 
+import edu.usc.irds.autoext.tree.SAXTreeBuilder;
+import edu.usc.irds.autoext.tree.TreeNode;
 import org.cyberneko.html.parsers.DOMParser;
 import org.w3c.dom.Document;
 import org.xml.sax.InputSource;
@@ -7,6 +9,7 @@ import org.xml.sax.SAXException;
 
 import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 
 /**
  * Created by tg on 1/5/16.
@@ -14,6 +17,7 @@ import java.io.IOException;
 public class ParseUtils {
 
     private static final DOMParser domParser = new DOMParser();
+    private static final ThreadLocal<SAXTreeBuilder> treeBuilder = ThreadLocal.withInitial(SAXTreeBuilder::new);
 
     public static Document parseFile(String path) throws IOException, SAXException {
         synchronized (domParser) {
@@ -23,4 +27,30 @@ public class ParseUtils {
             return document;
         }
     }
+
+    /**
+     * Parses the html file and builds a detached tree of its document element, without building the DOM
+     * @param path path to html file
+     * @return the root of tree
+     * @throws IOException when an io error occurs
+     * @throws SAXException when the parser fails
+     * @see SAXTreeBuilder
+     */
+    public static TreeNode parseTree(String path) throws IOException, SAXException {
+        try (InputStream stream = new FileInputStream(path)) {
+            return parseTree(stream);
+        }
+    }
+
+    /**
+     * Parses the html content and builds a detached tree of its document element, without building the DOM
+     * @param stream the html content
+     * @return the root of tree
+     * @throws IOException when an io error occurs
+     * @throws SAXException when the parser fails
+     * @see SAXTreeBuilder
+     */
+    public static TreeNode parseTree(InputStream stream) throws IOException, SAXException {
+        return treeBuilder.get().build(new InputSource(stream));
+    }
 }
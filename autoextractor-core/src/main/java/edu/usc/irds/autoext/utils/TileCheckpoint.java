@@ -0,0 +1,203 @@
+package edu.usc.irds.autoext.utils;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Records the progress of a matrix computation, so a restarted computation can skip the tiles
+ * which were completed before it was stopped.
+ * The completed tiles are saved to a manifest file periodically, after the matrix is flushed, so a tile
+ * recorded in the manifest is always in the stored matrix. The manifest is identified by a fingerprint
+ * of the job (for example, a hash of the ids of objects) and the tiling, it is ignored when they don't match.
+ * The workers record their tiles while a save is in progress: a save copies the completed tiles and
+ * then flushes the matrix and writes the manifest without holding the lock of this checkpoint.
+ *
+ * @see ParallelMatrixBuilder#computeSymmetricMatrix(java.util.function.BiFunction, java.util.List,
+ * java.util.function.ToDoubleFunction, edu.usc.irds.autoext.matrix.Matrix, int, TileCheckpoint)
+ */
+public class TileCheckpoint {
+
+    private static final int MAGIC = 0x434b5054; // CKPT
+    private static final int VERSION = 1;
+
+    private final File manifestFile;
+    private final Flushable target;
+    private final long fingerprint;
+    private final long intervalMillis;
+    /** held while flushing the matrix and writing the manifest, one save at a time */
+    private final Lock saveLock = new ReentrantLock();
+
+    /** tiling of the stored manifest, null when there is nothing to resume */
+    private int[] storedTiling;
+    private BitSet storedTiles;
+
+    private int[] tiling;
+    private BitSet completedTiles = new BitSet();
+    private int resumedTiles;
+    private long lastSave;
+
+    /**
+     * Creates a checkpoint, loads the progress from manifest file if it exists and has the same fingerprint
+     * @param manifestFile the manifest file
+     * @param target the stored matrix, it is flushed before the manifest is saved
+     * @param fingerprint the fingerprint of the job
+     * @param intervalMillis minimum time between two saves
+     * @throws IOException when an io error occurs
+     */
+    public TileCheckpoint(File manifestFile, Flushable target, long fingerprint,
+                          long intervalMillis) throws IOException {
+        this.manifestFile = manifestFile;
+        this.target = target;
+        this.fingerprint = fingerprint;
+        this.intervalMillis = intervalMillis;
+        if (isResumable(manifestFile, fingerprint)) {
+            try (DataInputStream in = new DataInputStream(
+                    new BufferedInputStream(new FileInputStream(manifestFile)))) {
+                in.readInt();
+                in.readInt();
+                in.readLong();
+                storedTiling = new int[]{in.readInt(), in.readInt(), in.readInt(), in.readInt()};
+                long[] words = new long[in.readInt()];
+                for (int i = 0; i < words.length; i++) {
+                    words[i] = in.readLong();
+                }
+                storedTiles = BitSet.valueOf(words);
+            }
+        }
+    }
+
+    /**
+     * Checks if the manifest file has the progress of the job
+     * @param manifestFile the manifest file
+     * @param fingerprint the fingerprint of the job
+     * @return true if the job can be resumed from the manifest
+     * @throws IOException when an io error occurs
+     */
+    public static boolean isResumable(File manifestFile, long fingerprint) throws IOException {
+        if (!manifestFile.exists()) {
+            return false;
+        }
+        try (DataInputStream in = new DataInputStream(new FileInputStream(manifestFile))) {
+            return in.readInt() == MAGIC && in.readInt() == VERSION && in.readLong() == fingerprint;
+        } catch (EOFException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Starts the computation of tiles. The tiles completed earlier are resumed only if the tiling is same
+     * @param n number of rows and columns of matrix
+     * @param from index of the first new row
+     * @param tileSize number of rows and columns in a tile
+     * @param numTiles number of tiles to be computed
+     */
+    synchronized void start(int n, int from, int tileSize, int numTiles) {
+        tiling = new int[]{n, from, tileSize, numTiles};
+        completedTiles = new BitSet(numTiles);
+        if (storedTiling != null && Arrays.equals(storedTiling, tiling)) {
+            completedTiles.or(storedTiles);
+        }
+        resumedTiles = completedTiles.cardinality();
+        lastSave = System.currentTimeMillis();
+    }
+
+    /**
+     * Checks if the tile is completed
+     * @param tile index of tile
+     * @return true if the tile was completed
+     */
+    synchronized boolean isCompleted(int tile) {
+        return completedTiles.get(tile);
+    }
+
+    /**
+     * Records a completed tile, saves the progress if the interval has passed since the last save
+     * @param tile index of tile
+     */
+    void complete(int tile) {
+        boolean due;
+        synchronized (this) {
+            completedTiles.set(tile);
+            due = System.currentTimeMillis() - lastSave >= intervalMillis;
+        }
+        // the other workers go on when a save is in progress already
+        if (due && saveLock.tryLock()) {
+            try {
+                save();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            } finally {
+                saveLock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Flushes the matrix and saves the completed tiles to the manifest file
+     * @throws IOException when an io error occurs
+     */
+    public void save() throws IOException {
+        saveLock.lock();
+        try {
+            int[] savedTiling;
+            long[] words;
+            synchronized (this) {
+                // the tiles completed so far are in the matrix, they are stored by the flush below
+                savedTiling = tiling;
+                words = completedTiles.toLongArray();
+                lastSave = System.currentTimeMillis();
+            }
+            target.flush();
+            File tmpFile = new File(manifestFile.getPath() + ".tmp");
+            try (DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(new FileOutputStream(tmpFile)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeLong(fingerprint);
+                for (int value : savedTiling) {
+                    out.writeInt(value);
+                }
+                out.writeInt(words.length);
+                for (long word : words) {
+                    out.writeLong(word);
+                }
+            }
+            // the old manifest is valid until the new one is complete
+            Files.move(tmpFile.toPath(), manifestFile.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            saveLock.unlock();
+        }
+    }
+
+    /**
+     * Gets the number of tiles which were completed before this computation started
+     * @return number of resumed tiles
+     */
+    public synchronized int getResumedTiles() {
+        return resumedTiles;
+    }
+
+    /**
+     * Gets the number of completed tiles, including the resumed ones
+     * @return number of completed tiles
+     */
+    public synchronized int getCompletedTiles() {
+        return completedTiles.cardinality();
+    }
+}
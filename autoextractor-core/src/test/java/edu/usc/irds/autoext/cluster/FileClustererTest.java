@@ -0,0 +1,149 @@
+package edu.usc.irds.autoext.cluster;
+
+import edu.usc.irds.autoext.matrix.MappedMatrix;
+import edu.usc.irds.autoext.utils.Checks;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.kohsuke.args4j.CmdLineParser;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class FileClustererTest {
+
+    private static final String[] FILES = {"src/test/resources/html/simple/1.html",
+            "src/test/resources/html/simple/2.html",
+            "src/test/resources/html/simple/3.html"};
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File writeList(int count) throws Exception {
+        List<String> paths = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            paths.add(new File(FILES[i]).getAbsolutePath());
+        }
+        File listFile = folder.newFile();
+        Files.write(listFile.toPath(), paths);
+        return listFile;
+    }
+
+    private void cluster(File listFile, File workDir, String... args) throws Exception {
+        List<String> allArgs = new ArrayList<>(Arrays.asList("-list", listFile.getPath(),
+                "-workdir", workDir.getPath(), "-threads", "2"));
+        allArgs.addAll(Arrays.asList(args));
+        FileClusterer clusterer = new FileClusterer();
+        new CmdLineParser(clusterer).parseArgument(allArgs);
+        clusterer.cluster();
+    }
+
+    private static double[][] readMatrix(File file) throws Exception {
+        try (MappedMatrix matrix = MappedMatrix.open(file)) {
+            double[][] values = new double[matrix.getRows()][matrix.getColumns()];
+            for (int i = 0; i < values.length; i++) {
+                for (int j = 0; j < values.length; j++) {
+                    values[i][j] = matrix.get(i, j);
+                }
+            }
+            return values;
+        }
+    }
+
+    private static List<String> readClusters(File workDir) throws Exception {
+        return Files.readAllLines(new File(workDir, FileClusterer.CLUSTER_FILE).toPath());
+    }
+
+    @Test
+    public void testIncrementalMatrix() throws Exception {
+        File fullDir = folder.newFolder();
+        File fullMatrix = new File(fullDir, "sim.bin");
+        cluster(writeList(3), fullDir, "-matrix", fullMatrix.getPath());
+        double[][] expected = readMatrix(fullMatrix);
+
+        File workDir = folder.newFolder();
+        File matrixFile = new File(workDir, "sim.bin");
+        cluster(writeList(2), workDir, "-matrix", matrixFile.getPath(), "-incremental");
+        assertEquals(2, readMatrix(matrixFile).length);
+        File treesFile = new File(workDir, FileClusterer.TREES_FILE);
+        File previousTrees = folder.newFile();
+        Files.copy(treesFile.toPath(), previousTrees.toPath(), StandardCopyOption.REPLACE_EXISTING);
+
+        cluster(writeList(3), workDir, "-matrix", matrixFile.getPath(), "-incremental");
+        assertArrayEquals(expected, readMatrix(matrixFile));
+        assertEquals(readClusters(fullDir), readClusters(workDir));
+
+        // stopped after replacing the matrix, before storing the trees, and leaving a partial matrix
+        Files.copy(previousTrees.toPath(), treesFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        Files.write(new File(workDir, "sim.bin.tmp").toPath(), new byte[]{1, 2, 3});
+        cluster(writeList(3), workDir, "-matrix", matrixFile.getPath(), "-incremental");
+        assertArrayEquals(expected, readMatrix(matrixFile));
+        assertEquals(readClusters(fullDir), readClusters(workDir));
+
+        // no new files
+        cluster(writeList(3), workDir, "-matrix", matrixFile.getPath(), "-incremental");
+        assertArrayEquals(expected, readMatrix(matrixFile));
+    }
+
+    @Test
+    public void testIncrementalSparse() throws Exception {
+        File fullDir = folder.newFolder();
+        cluster(writeList(3), fullDir, "-sparse");
+
+        File workDir = folder.newFolder();
+        cluster(writeList(2), workDir, "-sparse", "-incremental");
+        cluster(writeList(3), workDir, "-sparse", "-incremental");
+        assertEquals(readClusters(fullDir), readClusters(workDir));
+        assertEquals(Files.readAllLines(new File(fullDir, FileClusterer.IDS_FILE).toPath()),
+                Files.readAllLines(new File(workDir, FileClusterer.IDS_FILE).toPath()));
+    }
+
+    private void assertNotReusable(File listFile, File workDir, String... args) throws Exception {
+        try {
+            cluster(listFile, workDir, args);
+            fail("Reused the similarities pruned at a higher threshold");
+        } catch (Checks.CheckFailedException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testPrunedMatrix() throws Exception {
+        File fullDir = folder.newFolder();
+        File fullMatrix = new File(fullDir, "sim.bin");
+        cluster(writeList(3), fullDir, "-matrix", fullMatrix.getPath(), "-threshold", "0.4");
+        double[][] expected = readMatrix(fullMatrix);
+
+        File workDir = folder.newFolder();
+        File matrixFile = new File(workDir, "sim.bin");
+        cluster(writeList(3), workDir, "-matrix", matrixFile.getPath(), "-prune", "-threshold", "0.9",
+                "-incremental");
+        try (MappedMatrix matrix = MappedMatrix.open(matrixFile)) {
+            assertEquals(0.9, matrix.getPruningThreshold(), 0.0);
+        }
+        cluster(writeList(3), workDir, "-matrix", matrixFile.getPath(), "-reuse", "-threshold", "0.95");
+        assertNotReusable(writeList(3), workDir, "-matrix", matrixFile.getPath(), "-reuse", "-threshold", "0.4");
+
+        // the pruned similarities are computed again
+        cluster(writeList(3), workDir, "-matrix", matrixFile.getPath(), "-threshold", "0.4", "-incremental");
+        assertArrayEquals(expected, readMatrix(matrixFile));
+        assertEquals(readClusters(fullDir), readClusters(workDir));
+        cluster(writeList(3), workDir, "-matrix", matrixFile.getPath(), "-reuse", "-threshold", "0.4");
+    }
+
+    @Test
+    public void testPrunedNeighbors() throws Exception {
+        File workDir = folder.newFolder();
+        cluster(writeList(3), workDir, "-sparse", "-prune", "-threshold", "0.9");
+        cluster(writeList(3), workDir, "-sparse", "-reuse", "-threshold", "0.95");
+        assertNotReusable(writeList(3), workDir, "-sparse", "-reuse", "-threshold", "0.4");
+    }
+}
@@ -0,0 +1,58 @@
+package edu.usc.irds.autoext.matrix;
+
+import edu.usc.irds.autoext.utils.ParallelMatrixBuilder;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.ReadOnlyBufferException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class MappedMatrixTest {
+
+    @Test
+    public void testReopen() throws Exception {
+        int n = 41;
+        List<Integer> objs = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            objs.add(i * 5 % 17);
+        }
+        for (Precision precision : Precision.values()) {
+            File file = File.createTempFile("matrix", ".bin");
+            file.deleteOnExit();
+            try (MappedMatrix matrix = MappedMatrix.create(file, n, precision)) {
+                new ParallelMatrixBuilder(2, 8).computeSymmetricMatrix((a, b) -> a * 100.0 + b, objs,
+                        Integer::doubleValue, matrix);
+            }
+            try (MappedMatrix matrix = MappedMatrix.open(file)) {
+                assertEquals(n, matrix.getRows());
+                assertEquals(precision, matrix.getPrecision());
+                for (int i = 0; i < n; i++) {
+                    for (int j = 0; j < n; j++) {
+                        int a = objs.get(Math.min(i, j));
+                        int b = objs.get(Math.max(i, j));
+                        assertEquals(a * 100.0 + b, matrix.get(i, j), 0.0);
+                    }
+                }
+                try {
+                    matrix.set(0, 0, 1.0);
+                    fail("Opened matrix should be read only");
+                } catch (ReadOnlyBufferException e) {
+                    // expected
+                }
+            }
+        }
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testBounds() throws Exception {
+        File file = File.createTempFile("matrix", ".bin");
+        file.deleteOnExit();
+        try (MappedMatrix matrix = MappedMatrix.create(file, 3, Precision.FLOAT)) {
+            matrix.get(3, 1);
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package edu.usc.irds.autoext.matrix;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+public class MatrixWriterTest {
+
+    @Test
+    public void testWriteRead() throws Exception {
+        Random random = new Random(7);
+        int n = 150;
+        PackedSymmetricMatrix symmetric = new PackedSymmetricMatrix(n, Precision.DOUBLE);
+        DenseMatrix dense = new DenseMatrix(n, n + 3);
+        for (int i = 0; i < n; i++) {
+            for (int j = 0; j < n + 3; j++) {
+                dense.set(i, j, random.nextInt(4) / 4.0);
+                if (j < n) {
+                    symmetric.set(i, j, random.nextDouble());
+                }
+            }
+        }
+        for (boolean compressed : new boolean[]{false, true}) {
+            for (Matrix matrix : new Matrix[]{symmetric, dense}) {
+                File file = File.createTempFile("matrix", ".bin");
+                file.deleteOnExit();
+                MatrixWriter.write(matrix, file, compressed);
+                try (MatrixReader reader = new MatrixReader(file)) {
+                    assertEquals(matrix.getRows(), reader.getRows());
+                    assertEquals(matrix.getColumns(), reader.getColumns());
+                    assertEquals(matrix.isSymmetric(), reader.isSymmetric());
+                    assertEquals(compressed, reader.isCompressed());
+                    // random access, backwards
+                    for (int i = matrix.getRows() - 1; i >= 0; i--) {
+                        for (int j = matrix.getColumns() - 1; j >= 0; j--) {
+                            assertEquals(matrix.get(i, j), reader.get(i, j), 0.0);
+                        }
+                    }
+                    Matrix copy = reader.readInto(new DenseMatrix(matrix.getRows(), matrix.getColumns()));
+                    for (int i = 0; i < matrix.getRows(); i++) {
+                        for (int j = 0; j < matrix.getColumns(); j++) {
+                            assertEquals(matrix.get(i, j), copy.get(i, j), 0.0);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testFloat() throws Exception {
+        PackedSymmetricMatrix matrix = new PackedSymmetricMatrix(3);
+        matrix.set(0, 2, 0.1);
+        matrix.set(1, 1, 1.0);
+        File file = File.createTempFile("matrix", ".bin");
+        file.deleteOnExit();
+        MatrixWriter.write(matrix, file, false);
+        try (MatrixReader reader = new MatrixReader(file)) {
+            assertEquals(Precision.FLOAT, reader.getPrecision());
+            assertEquals(0.1f, reader.get(2, 0), 0.0);
+            assertEquals(1.0, reader.get(1, 1), 0.0);
+            assertEquals(0.0, reader.get(2, 2), 0.0);
+            // 6 floats in the upper triangle
+            assertEquals(6 * 4, file.length() - 48 - 2 * 8);
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package edu.usc.irds.autoext.matrix;
+
+import edu.usc.irds.autoext.cluster.SharedNeighborClusterer;
+import edu.usc.irds.autoext.utils.ParallelMatrixBuilder;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BiFunction;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class NeighborListsTest {
+
+    @Test
+    public void testTopK() {
+        NeighborLists lists = new NeighborLists(1, 3, 0.5);
+        lists.offer(0, 4, 0.6);
+        lists.offer(0, 1, 0.4);
+        lists.offer(0, 2, 0.9);
+        lists.offer(0, 7, 0.6);
+        lists.offer(0, 3, 0.6);
+        assertArrayEquals(new int[]{2, 3, 4}, lists.getNeighbors(0));
+        assertArrayEquals(new float[]{0.9f, 0.6f, 0.6f}, lists.getSimilarities(0), 0.0f);
+        // offered after reading
+        lists.offer(0, 5, 0.95);
+        assertArrayEquals(new int[]{5, 2, 3}, lists.getNeighbors(0));
+    }
+
+    @Test
+    public void testSameAsMatrix() throws Exception {
+        int n = 60;
+        List<Integer> objs = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            objs.add(i * 7 % n);
+        }
+        // no ties within a row; the matrix keeps one of the equally similar items, the lists keep all of them
+        BiFunction<Integer, Integer, Double> function = (a, b) -> 1.0 - (a + b) % n / 128.0;
+        ParallelMatrixBuilder builder = new ParallelMatrixBuilder(3, 8);
+        Matrix matrix = builder.computeSymmetricMatrix(function, objs, Integer::doubleValue,
+                new PackedSymmetricMatrix(n));
+        NeighborLists lists = builder.computeNeighborLists(function, objs, Integer::doubleValue,
+                new NeighborLists(n, 10, 0.7));
+
+        File file = File.createTempFile("neighbors", ".bin");
+        file.deleteOnExit();
+        lists.write(file);
+        NeighborLists read = NeighborLists.read(file);
+        assertEquals(10, read.getK());
+        assertEquals(0.7, read.getThreshold(), 0.0);
+
+        SharedNeighborClusterer clusterer = new SharedNeighborClusterer();
+        String[] labels = new String[n];
+        for (int i = 0; i < n; i++) {
+            labels[i] = "item" + i;
+            assertEquals(clusterer.findNearestNeighbors(matrix, i, 0.7, 10),
+                    clusterer.findNearestNeighbors(lists, i, 0.7, 10));
+            assertEquals(clusterer.findNearestNeighbors(matrix, i, 0.8, 5),
+                    clusterer.findNearestNeighbors(read, i, 0.8, 5));
+            assertArrayEquals(lists.getNeighbors(i), read.getNeighbors(i));
+        }
+        assertEquals(clusterer.cluster(matrix, labels, 0.75, 8), clusterer.cluster(read, labels, 0.75, 8));
+    }
+
+    @Test
+    public void testNonDyadicThreshold() throws Exception {
+        int n = 10;
+        List<Integer> objs = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            objs.add(i);
+        }
+        // 0.7 and 0.9 are rounded below themselves when stored as floats; no ties within a row
+        double[] scores = {0.95, 0.9, 0.85, 0.8, 0.75, 0.7, 0.65, 0.6, 0.55, 0.5};
+        BiFunction<Integer, Integer, Double> function = (a, b) -> scores[(a + b) % n];
+        ParallelMatrixBuilder builder = new ParallelMatrixBuilder(2, 4);
+        Matrix matrix = builder.computeSymmetricMatrix(function, objs, Integer::doubleValue,
+                new DenseMatrix(n, n));
+        NeighborLists lists = builder.computeNeighborLists(function, objs, Integer::doubleValue,
+                new NeighborLists(n, n, 0.7));
+
+        SharedNeighborClusterer clusterer = new SharedNeighborClusterer();
+        for (int i = 0; i < n; i++) {
+            assertEquals(clusterer.findNearestNeighbors(matrix, i, 0.7, n),
+                    clusterer.findNearestNeighbors(lists, i, 0.7, n));
+            assertEquals(clusterer.findNearestNeighbors(matrix, i, 0.9, n),
+                    clusterer.findNearestNeighbors(lists, i, 0.9, n));
+        }
+    }
+
+    @Test
+    public void testFloatMatrix() throws Exception {
+        int n = 10;
+        List<Integer> objs = new ArrayList<>();
+        String[] labels = new String[n];
+        for (int i = 0; i < n; i++) {
+            objs.add(i);
+            labels[i] = "item" + i;
+        }
+        double[] scores = {0.95, 0.9, 0.85, 0.8, 0.75, 0.7, 0.65, 0.6, 0.55, 0.5};
+        BiFunction<Integer, Integer, Double> function = (a, b) -> scores[(a + b) % n];
+        ParallelMatrixBuilder builder = new ParallelMatrixBuilder(2, 4);
+        Matrix matrix = builder.computeSymmetricMatrix(function, objs, Integer::doubleValue,
+                new PackedSymmetricMatrix(n, Precision.FLOAT));
+        NeighborLists lists = builder.computeNeighborLists(function, objs, Integer::doubleValue,
+                new NeighborLists(n, n, 0.7));
+
+        SharedNeighborClusterer clusterer = new SharedNeighborClusterer();
+        for (int i = 0; i < n; i++) {
+            // the pairs scoring exactly 0.7 are neighbors
+            assertTrue(clusterer.findNearestNeighbors(matrix, i, 0.7, n).get((15 - i) % n));
+        }
+        for (double threshold : new double[]{0.7, 0.9}) {
+            assertEquals(clusterer.cluster(matrix, labels, threshold, n),
+                    clusterer.cluster(lists, labels, threshold, n));
+        }
+    }
+}
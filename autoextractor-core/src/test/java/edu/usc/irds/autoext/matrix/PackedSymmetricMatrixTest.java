@@ -0,0 +1,74 @@
+package edu.usc.irds.autoext.matrix;
+
+import edu.usc.irds.autoext.utils.MatrixUtils;
+import edu.usc.irds.autoext.utils.ParallelMatrixBuilder;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BiFunction;
+
+import static org.junit.Assert.assertEquals;
+
+public class PackedSymmetricMatrixTest {
+
+    @Test
+    public void testGetSet() {
+        int n = 37;
+        for (Precision precision : Precision.values()) {
+            PackedSymmetricMatrix matrix = new PackedSymmetricMatrix(n, precision);
+            assertEquals(precision, matrix.getPrecision());
+            for (int i = 0; i < n; i++) {
+                for (int j = i; j < n; j++) {
+                    matrix.set(i, j, i * 1000 + j);
+                }
+            }
+            for (int i = 0; i < n; i++) {
+                for (int j = 0; j < n; j++) {
+                    assertEquals(Math.min(i, j) * 1000 + Math.max(i, j), matrix.get(i, j), 0.0);
+                }
+            }
+        }
+        PackedSymmetricMatrix matrix = new PackedSymmetricMatrix(2, Precision.FLOAT);
+        matrix.set(1, 0, 0.1);
+        assertEquals(0.1f, matrix.get(0, 1), 0.0);
+    }
+
+    @Test
+    public void testChunks() {
+        // more cells than a chunk
+        int n = 5800;
+        PackedSymmetricMatrix matrix = new PackedSymmetricMatrix(n);
+        matrix.set(n - 1, n - 1, 1.0);
+        matrix.set(n - 2, n - 1, 2.0);
+        matrix.set(0, n - 1, 3.0);
+        assertEquals(1.0, matrix.get(n - 1, n - 1), 0.0);
+        assertEquals(2.0, matrix.get(n - 1, n - 2), 0.0);
+        assertEquals(3.0, matrix.get(n - 1, 0), 0.0);
+        assertEquals(0.0, matrix.get(1, n - 1), 0.0);
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testBounds() {
+        new PackedSymmetricMatrix(3).get(1, 3);
+    }
+
+    @Test
+    public void testBuilders() {
+        List<Integer> objs = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            objs.add(i * 7 % 13);
+        }
+        BiFunction<Integer, Integer, Double> function = (a, b) -> (double) Math.abs(a - b);
+        double[][] expected = MatrixUtils.computeSymmetricMatrix(function, objs);
+        Matrix packed = MatrixUtils.computeSymmetricMatrix(function, objs, new PackedSymmetricMatrix(50));
+        Matrix parallel = new ParallelMatrixBuilder(3, 8).computeSymmetricMatrix(function, objs,
+                Integer::doubleValue, new PackedSymmetricMatrix(50, Precision.DOUBLE));
+        for (int i = 0; i < 50; i++) {
+            for (int j = 0; j < 50; j++) {
+                assertEquals(expected[i][j], packed.get(i, j), 0.0);
+                assertEquals(expected[i][j], parallel.get(i, j), 0.0);
+            }
+        }
+    }
+}
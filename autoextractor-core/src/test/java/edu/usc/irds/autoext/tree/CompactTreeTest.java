@@ -0,0 +1,41 @@
+package edu.usc.irds.autoext.tree;
+
+import edu.usc.irds.autoext.utils.ParseUtils;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class CompactTreeTest {
+
+    @Test
+    public void testStructure() throws Exception {
+        TreeNode tree = new TreeNode(ParseUtils.parseFile("src/test/resources/html/simple/1.html"), null);
+        ZSTEDComputer computer = new ZSTEDComputer();
+        CompactTree compactTree = computer.compact(tree);
+
+        List<TreeNode> postOrder = tree.postOrderTraverse();
+        assertEquals(postOrder.size(), compactTree.size());
+        assertEquals(tree.getSize(), compactTree.getSize(compactTree.size() - 1));
+        for (int i = 0; i < postOrder.size(); i++) {
+            TreeNode node = postOrder.get(i);
+            assertEquals(node, compactTree.getNode(i));
+            assertEquals(node.getLeftMostDescendant().getIndex(), compactTree.getLeftMostDescendant(i));
+            assertEquals(node.getSize(), compactTree.getSize(i));
+        }
+        int[] expectedKeyRoots = tree.getKeyRoots().stream().mapToInt(TreeNode::getIndex).toArray();
+        assertArrayEquals(expectedKeyRoots, compactTree.keyRoots());
+    }
+
+    @Test
+    public void testDistance() throws Exception {
+        TreeNode tree1 = new TreeNode(ParseUtils.parseFile("src/test/resources/html/simple/1.html"), null);
+        TreeNode tree2 = new TreeNode(ParseUtils.parseFile("src/test/resources/html/simple/2.html"), null);
+        ZSTEDComputer computer = new ZSTEDComputer();
+        assertEquals(new ZSTEDistance(tree1, tree2).compute(),
+                computer.computeDistance(computer.compact(tree1), computer.compact(tree2)), 0.0);
+        assertEquals(0.0, computer.computeDistance(computer.compact(tree1), computer.compact(tree1)), 0.0);
+    }
+}
@@ -0,0 +1,46 @@
+package edu.usc.irds.autoext.tree;
+
+import edu.usc.irds.autoext.utils.ParseUtils;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertSame;
+
+public class LabelDictionaryTest {
+
+    @Test
+    public void testGetId() throws Exception {
+        LabelDictionary dictionary = new LabelDictionary();
+        int div = dictionary.getId("DIV");
+        int span = dictionary.getId("SPAN");
+        assertNotEquals(div, span);
+        assertEquals(div, dictionary.getId(new String("DIV")));
+        assertEquals("SPAN", dictionary.getLabel(span));
+        assertEquals(2, dictionary.size());
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(i + 2, dictionary.getId("L" + i));
+        }
+        assertEquals("L999", dictionary.getLabel(1001));
+    }
+
+    @Test
+    public void testInterning() throws Exception {
+        TreeNode tree1 = new TreeNode(ParseUtils.parseFile("src/test/resources/html/simple/1.html"), null);
+        TreeNode tree2 = new TreeNode(ParseUtils.parseFile("src/test/resources/html/simple/2.html"), null);
+        List<TreeNode> nodes1 = tree1.postOrderTraverse();
+        List<TreeNode> nodes2 = tree2.postOrderTraverse();
+        for (TreeNode node1 : nodes1) {
+            for (TreeNode node2 : nodes2) {
+                if (node1.getNodeName().equals(node2.getNodeName())) {
+                    assertEquals(node1.getLabelId(), node2.getLabelId());
+                    assertSame(node1.getNodeName(), node2.getNodeName());
+                } else {
+                    assertNotEquals(node1.getLabelId(), node2.getLabelId());
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package edu.usc.irds.autoext.tree;
+
+import edu.usc.irds.autoext.base.EditDistanceComputer;
+import edu.usc.irds.autoext.matrix.Matrix;
+import edu.usc.irds.autoext.matrix.PackedSymmetricMatrix;
+import edu.usc.irds.autoext.matrix.Precision;
+import edu.usc.irds.autoext.utils.ParallelMatrixBuilder;
+import edu.usc.irds.autoext.utils.ParseUtils;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class LowerBoundFilterTest {
+
+    @Test
+    public void testL1Distance() throws Exception {
+        assertEquals(0, TreeLowerBound.l1Distance(new int[]{1, 2, 2, 3}, new int[]{1, 2, 2, 3}));
+        assertEquals(4, TreeLowerBound.l1Distance(new int[]{1, 2, 2, 3}, new int[]{1, 2, 4, 4}));
+        assertEquals(2, TreeLowerBound.l1Distance(new int[]{}, new int[]{5, 6}));
+    }
+
+    @Test
+    public void testPrune() throws Exception {
+        ZSTEDComputer computer = new ZSTEDComputer();
+        String[] files = {"src/test/resources/html/simple/1.html",
+                "src/test/resources/html/simple/2.html",
+                "src/test/resources/html/simple/3.html"};
+        LowerBoundFilter filter = LowerBoundFilter.createDefault();
+        for (String file1 : files) {
+            for (String file2 : files) {
+                CompactTree tree1 = computer.compact(new TreeNode(ParseUtils.parseFile(file1), null));
+                CompactTree tree2 = computer.compact(new TreeNode(ParseUtils.parseFile(file2), null));
+                double distance = computer.computeDistance(tree1, tree2);
+                // lower bounds never exceed the distance
+                assertFalse(filter.prune(tree1, tree2, distance, 1.0));
+            }
+        }
+        assertEquals(9, filter.getCheckedCount());
+
+        CompactTree tree1 = computer.compact(new TreeNode(ParseUtils.parseFile(files[0]), null));
+        CompactTree tree3 = computer.compact(new TreeNode(ParseUtils.parseFile(files[2]), null));
+        assertTrue(filter.prune(tree1, tree3, 0.0, 1.0));
+        assertEquals(1L, filter.getPrunedCounts().values().stream().mapToLong(Long::longValue).sum());
+    }
+
+    @Test
+    public void testDistanceMatrix() throws Exception {
+        String[] files = {"src/test/resources/html/simple/1.html",
+                "src/test/resources/html/simple/2.html",
+                "src/test/resources/html/simple/3.html"};
+        List<TreeNode> trees = new ArrayList<>();
+        for (String file : files) {
+            trees.add(new TreeNode(ParseUtils.parseFile(file), null));
+        }
+        ZSTEDComputer computer = new ZSTEDComputer();
+        double[][] exact = computer.computeDistanceMatrix(trees);
+        double maxDistance = exact[0][1];
+        double[][] bounded = computer.computeDistanceMatrix(trees, maxDistance);
+        Matrix parallel = new ParallelMatrixBuilder(2).computeDistanceMatrix(computer, trees, TreeNode::getSize,
+                maxDistance, new PackedSymmetricMatrix(trees.size(), Precision.DOUBLE));
+        for (int i = 0; i < trees.size(); i++) {
+            for (int j = 0; j < trees.size(); j++) {
+                double expected = exact[i][j] > maxDistance ? EditDistanceComputer.DISTANCE_EXCEEDED : exact[i][j];
+                assertEquals(expected, bounded[i][j], 0.0);
+                assertEquals(expected, parallel.get(i, j), 0.0);
+            }
+        }
+        // the pairs with the third tree are pruned by the bounds
+        long pruned = computer.getLowerBoundFilter().getPrunedCounts().values().stream()
+                .mapToLong(Long::longValue).sum();
+        assertEquals(4, pruned);
+    }
+}
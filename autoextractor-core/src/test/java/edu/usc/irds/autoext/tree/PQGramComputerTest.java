@@ -0,0 +1,58 @@
+package edu.usc.irds.autoext.tree;
+
+import edu.usc.irds.autoext.utils.DistanceCache;
+import edu.usc.irds.autoext.utils.ParseUtils;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class PQGramComputerTest {
+
+    @Test
+    public void testComputeDistance() throws Exception {
+        PQGramComputer computer = new PQGramComputer();
+        TreeNode tree1 = new TreeNode(ParseUtils.parseFile("src/test/resources/html/simple/1.html"), null);
+        TreeNode tree2 = new TreeNode(ParseUtils.parseFile("src/test/resources/html/simple/2.html"), null);
+        TreeNode tree3 = new TreeNode(ParseUtils.parseFile("src/test/resources/html/simple/3.html"), null);
+
+        assertEquals(0.0, computer.computeDistance(tree1, tree1), 0.0);
+        assertEquals(computer.computeDistance(tree1, tree2), computer.computeDistance(tree2, tree1), 0.0);
+        assertTrue(computer.computeDistance(tree1, tree2) < computer.computeDistance(tree1, tree3));
+        assertSame(computer.getProfile(tree1), computer.getProfile(tree1));
+
+        StructureSimComputer simComputer = new StructureSimComputer(computer);
+        assertEquals(1.0, simComputer.compute(tree3, tree3), 0.0001);
+        double sim12 = simComputer.compute(tree1, tree2);
+        double sim13 = simComputer.compute(tree1, tree3);
+        assertTrue(sim12 > sim13);
+        assertTrue(sim13 >= 0.0 && sim12 <= 1.0);
+    }
+
+    @Test
+    public void testCountIntersection() throws Exception {
+        assertEquals(2, PQGramComputer.countIntersection(new long[]{1, 2, 2, 5}, new long[]{2, 2, 3}));
+        assertEquals(0, PQGramComputer.countIntersection(new long[]{}, new long[]{2, 2, 3}));
+    }
+
+    @Test
+    public void testCachedMetrics() throws Exception {
+        TreeNode tree1 = new TreeNode(ParseUtils.parseFile("src/test/resources/html/simple/1.html"), null);
+        TreeNode tree2 = new TreeNode(ParseUtils.parseFile("src/test/resources/html/simple/2.html"), null);
+        PQGramComputer computer23 = new PQGramComputer(2, 3);
+        PQGramComputer computer12 = new PQGramComputer(1, 2);
+        assertNotEquals(computer23.getMetricId(), computer12.getMetricId());
+        assertEquals(computer23.getMetricId(), new PQGramComputer().getMetricId());
+
+        // the distances of both the computers are kept apart in a shared cache
+        DistanceCache cache = new DistanceCache(10);
+        CachedEditDistanceComputer cached23 = new CachedEditDistanceComputer(computer23, cache);
+        CachedEditDistanceComputer cached12 = new CachedEditDistanceComputer(computer12, cache);
+        assertEquals(computer23.computeDistance(tree1, tree2), cached23.computeDistance(tree1, tree2), 0.0);
+        assertEquals(computer12.computeDistance(tree1, tree2), cached12.computeDistance(tree1, tree2), 0.0);
+        assertNotEquals(cached23.computeDistance(tree1, tree2), cached12.computeDistance(tree1, tree2), 0.0);
+        assertEquals(2, cache.getMisses());
+    }
+}
@@ -0,0 +1,147 @@
+package edu.usc.irds.autoext.tree;
+
+import edu.usc.irds.autoext.utils.ParseUtils;
+import edu.usc.irds.autoext.base.EditCost;
+import edu.usc.irds.autoext.base.EditDistanceComputer;
+import org.junit.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class PathStrategyTEDComputerTest {
+
+    /**
+     * Creates a tree whose every node has a leaf on the left and the rest of the tree on the right
+     */
+    private TreeNode createRightHeavyTree(int depth, String leafName) throws Exception {
+        Document doc = DocumentBuilderFactory.newInstance().newDocumentBuilder().newDocument();
+        Element root = doc.createElement("div");
+        Element parent = root;
+        for (int i = 0; i < depth; i++) {
+            parent.appendChild(doc.createElement(leafName));
+            Element child = doc.createElement("div");
+            parent.appendChild(child);
+            parent = child;
+        }
+        return new TreeNode(root, null);
+    }
+
+    /**
+     * Creates a tree which is right heavy under the first child of root and left heavy under the second one
+     */
+    private TreeNode createZigZagTree(int depth, String leafName) throws Exception {
+        Document doc = DocumentBuilderFactory.newInstance().newDocumentBuilder().newDocument();
+        Element root = doc.createElement("body");
+        for (boolean rightHeavy : new boolean[]{true, false}) {
+            Element parent = doc.createElement("div");
+            root.appendChild(parent);
+            for (int i = 0; i < depth; i++) {
+                Element child = doc.createElement("div");
+                if (rightHeavy) {
+                    parent.appendChild(doc.createElement(leafName));
+                    parent.appendChild(child);
+                } else {
+                    parent.appendChild(child);
+                    parent.appendChild(doc.createElement(leafName));
+                }
+                parent = child;
+            }
+        }
+        return new TreeNode(root, null);
+    }
+
+    private TreeNode createRandomTree(Random random, int size) throws Exception {
+        Document doc = DocumentBuilderFactory.newInstance().newDocumentBuilder().newDocument();
+        String[] names = {"a", "b", "c", "d"};
+        Element[] elements = new Element[size];
+        for (int i = 0; i < size; i++) {
+            elements[i] = doc.createElement(names[random.nextInt(names.length)]);
+            if (i > 0) {
+                // prefer the recent nodes as parents to get deep trees
+                elements[Math.max(0, i - 1 - random.nextInt(Math.min(i, 3)))].appendChild(elements[i]);
+            }
+        }
+        return new TreeNode(elements[0], null);
+    }
+
+    @Test
+    public void testComputeDistance() throws Exception {
+        ZSTEDComputer zsComputer = new ZSTEDComputer();
+        PathStrategyTEDComputer computer = new PathStrategyTEDComputer(zsComputer);
+        String[] files = {"src/test/resources/html/simple/1.html",
+                "src/test/resources/html/simple/2.html",
+                "src/test/resources/html/simple/3.html"};
+        for (String file1 : files) {
+            for (String file2 : files) {
+                TreeNode tree1 = new TreeNode(ParseUtils.parseFile(file1), null);
+                TreeNode tree2 = new TreeNode(ParseUtils.parseFile(file2), null);
+                assertEquals(zsComputer.computeDistance(tree1, tree2), computer.computeDistance(tree1, tree2), 0.0);
+            }
+        }
+    }
+
+    @Test
+    public void testRightHeavyTrees() throws Exception {
+        ZSTEDComputer zsComputer = new ZSTEDComputer();
+        PathStrategyTEDComputer computer = new PathStrategyTEDComputer(zsComputer);
+        TreeNode tree1 = createRightHeavyTree(30, "span");
+        TreeNode tree2 = createRightHeavyTree(25, "p");
+        assertTrue(PathStrategyTEDComputer.isRightPathCheaper(
+                zsComputer.compact(tree1), zsComputer.compact(tree2),
+                zsComputer.compact(tree1, true), zsComputer.compact(tree2, true)));
+        assertEquals(zsComputer.computeDistance(tree1, tree2), computer.computeDistance(tree1, tree2), 0.0);
+    }
+
+    @Test
+    public void testMixedTrees() throws Exception {
+        ZSTEDComputer zsComputer = new ZSTEDComputer();
+        PathStrategyTEDComputer computer = new PathStrategyTEDComputer(zsComputer);
+        TreeNode tree1 = createZigZagTree(30, "span");
+        TreeNode tree2 = createZigZagTree(25, "p");
+        CompactTree left1 = zsComputer.compact(tree1), left2 = zsComputer.compact(tree2);
+        CompactTree right1 = zsComputer.compact(tree1, true), right2 = zsComputer.compact(tree2, true);
+        PathStrategyTEDistance distance = new PathStrategyTEDistance(left1, right1, left2, right2,
+                zsComputer.getCostMetric());
+        // the different regions are decomposed along different paths
+        assertTrue(distance.getStrategyCost() * 2 < left1.getKeyRootCost() * left2.getKeyRootCost());
+        assertTrue(distance.getStrategyCost() * 2 < right1.getKeyRootCost() * right2.getKeyRootCost());
+        double expected = zsComputer.computeDistance(tree1, tree2);
+        assertEquals(expected, distance.compute(), 0.0);
+        assertEquals(expected, computer.computeDistance(tree1, tree2), 0.0);
+        assertEquals(expected, computer.computeDistance(tree1, tree2, expected), 0.0);
+        assertEquals(EditDistanceComputer.DISTANCE_EXCEEDED, computer.computeDistance(tree1, tree2, expected - 1), 0.0);
+    }
+
+    @Test
+    public void testRandomTrees() throws Exception {
+        Random random = new Random(42);
+        ZSTEDComputer zsComputer = new ZSTEDComputer();
+        EditCost<TreeNode> unequalCosts = new DefaultEditCost() {
+            @Override
+            public double getRemoveCost(TreeNode node) {
+                return 2.0;
+            }
+
+            @Override
+            public double getReplaceCost(TreeNode node1, TreeNode node2) {
+                return 1.5;
+            }
+        };
+        for (int t = 0; t < 50; t++) {
+            TreeNode tree1 = createRandomTree(random, 1 + random.nextInt(40));
+            TreeNode tree2 = createRandomTree(random, 1 + random.nextInt(40));
+            CompactTree left1 = zsComputer.compact(tree1), left2 = zsComputer.compact(tree2);
+            CompactTree right1 = zsComputer.compact(tree1, true), right2 = zsComputer.compact(tree2, true);
+            for (EditCost<TreeNode> cost : Arrays.asList(new DefaultEditCost(), unequalCosts)) {
+                double expected = new ZSTEDistance(left1, left2, cost).compute();
+                assertEquals(expected, new PathStrategyTEDistance(left1, right1, left2, right2, cost).compute(), 1e-9);
+            }
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package edu.usc.irds.autoext.tree;
+
+import edu.usc.irds.autoext.utils.ParseUtils;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class SAXTreeBuilderTest {
+
+    @Test
+    public void testSameAsDOM() throws Exception {
+        for (int i = 1; i <= 3; i++) {
+            String path = "src/test/resources/html/simple/" + i + ".html";
+            TreeNode domTree = new TreeNode(ParseUtils.parseFile(path).getDocumentElement(), null);
+            TreeNode saxTree = ParseUtils.parseTree(path);
+            assertTrue(saxTree.isDetached());
+            assertEquals(domTree.getSize(), saxTree.getSize());
+            assertEquals(domTree.getStructureHash(), saxTree.getStructureHash());
+            assertEquals(domTree.getClassNames(), saxTree.getClassNames());
+
+            List<TreeNode> domNodes = domTree.postOrderTraverse();
+            List<TreeNode> saxNodes = saxTree.postOrderTraverse();
+            for (int j = 0; j < domNodes.size(); j++) {
+                assertEquals(domNodes.get(j).getNodeName(), saxNodes.get(j).getNodeName());
+                assertEquals(domNodes.get(j).getLeftMostDescendant().getIndex(),
+                        saxNodes.get(j).getLeftMostDescendant().getIndex());
+            }
+            assertEquals(domTree.getKeyRoots().size(), saxTree.getKeyRoots().size());
+            assertEquals(0.0, new ZSTEDComputer().computeDistance(domTree, saxTree), 0.0);
+        }
+    }
+}
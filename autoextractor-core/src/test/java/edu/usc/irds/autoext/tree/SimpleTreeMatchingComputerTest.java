@@ -0,0 +1,71 @@
+package edu.usc.irds.autoext.tree;
+
+import edu.usc.irds.autoext.utils.ParseUtils;
+import org.junit.Test;
+import org.xml.sax.InputSource;
+
+import java.io.StringReader;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class SimpleTreeMatchingComputerTest {
+
+    SimpleTreeMatchingComputer instance = new SimpleTreeMatchingComputer();
+
+    /**
+     * The recursive definition of simple tree matching
+     */
+    private static int stm(TreeNode a, TreeNode b) {
+        if (!a.getNodeName().equals(b.getNodeName())) {
+            return 0;
+        }
+        List<TreeNode> c1 = a.getChildren();
+        List<TreeNode> c2 = b.getChildren();
+        int m = a.hasChildNodes() ? c1.size() : 0;
+        int n = b.hasChildNodes() ? c2.size() : 0;
+        int[][] matrix = new int[m + 1][n + 1];
+        for (int i = 1; i <= m; i++) {
+            for (int j = 1; j <= n; j++) {
+                matrix[i][j] = Math.max(Math.max(matrix[i - 1][j], matrix[i][j - 1]),
+                        matrix[i - 1][j - 1] + stm(c1.get(i - 1), c2.get(j - 1)));
+            }
+        }
+        return matrix[m][n] + 1;
+    }
+
+    private static TreeNode parse(String html) throws Exception {
+        return new SAXTreeBuilder().build(new InputSource(new StringReader(html)));
+    }
+
+    @Test
+    public void testMatching() throws Exception {
+        TreeNode tree1 = parse("<html><body><div><p>a</p><p>b</p></div><ul><li>1</li></ul></body></html>");
+        TreeNode tree2 = parse("<html><body><ul><li>1</li><li>2</li></ul><div><p>a</p></div></body></html>");
+        assertEquals(stm(tree1, tree2), instance.computeMatching(tree1, tree2));
+        // html, head, body, and the better of div-p or ul-li
+        assertEquals(5, instance.computeMatching(tree1, tree2));
+
+        TreeNode[] trees = new TreeNode[3];
+        for (int i = 0; i < trees.length; i++) {
+            trees[i] = ParseUtils.parseTree("src/test/resources/html/simple/" + (i + 1) + ".html");
+        }
+        for (TreeNode t1 : trees) {
+            for (TreeNode t2 : trees) {
+                assertEquals(stm(t1, t2), instance.computeMatching(t1, t2));
+            }
+        }
+    }
+
+    @Test
+    public void testCompute() throws Exception {
+        TreeNode tree1 = ParseUtils.parseTree("src/test/resources/html/simple/1.html");
+        TreeNode tree2 = ParseUtils.parseTree("src/test/resources/html/simple/2.html");
+        TreeNode tree3 = ParseUtils.parseTree("src/test/resources/html/simple/3.html");
+        assertEquals(1.0, instance.compute(tree1, tree1), 0.0);
+        assertEquals(instance.compute(tree1, tree2), instance.compute(tree2, tree1), 0.0);
+        assertTrue(instance.compute(tree1, tree2) > instance.compute(tree1, tree3));
+        assertTrue(instance.compute(tree1, tree3) >= 0.0);
+    }
+}
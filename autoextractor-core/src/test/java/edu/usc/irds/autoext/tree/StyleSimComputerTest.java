@@ -1,9 +1,12 @@
 package edu.usc.irds.autoext.tree;
 
 import edu.usc.irds.autoext.utils.ParseUtils;
+import edu.usc.irds.autoext.utils.XPathEvaluator;
 import org.junit.Test;
 import org.w3c.dom.Document;
+import org.xml.sax.InputSource;
 
+import java.io.FileReader;
 import java.util.Arrays;
 import java.util.HashSet;
 import java.util.Set;
@@ -27,6 +30,33 @@ public class StyleSimComputerTest {
         assertEquals(0, instance.countIntersection(a, b));
         b.addAll(a);
         assertEquals(3, instance.countIntersection(a, b));
+
+        assertEquals(2, StyleSimComputer.countIntersection(new long[]{1, 3, 5, 7}, new long[]{2, 3, 7, 9}));
+        assertEquals(0, StyleSimComputer.countIntersection(new long[]{1, 3}, new long[0]));
+        assertEquals(3, StyleSimComputer.countIntersection(new long[]{1, 2, 3}, new long[]{1, 2, 3}));
+    }
+
+    @Test
+    public void testJaccard() throws Exception {
+        Set<String> a = new HashSet<>(Arrays.asList("nav", "item", "footer"));
+        Set<String> b = new HashSet<>(Arrays.asList("item", "footer", "ad"));
+        assertEquals(0.5, instance.compute(a, b), 0.0);
+        assertEquals(1.0 / 3, instance.compute(new long[]{1, 2}, new long[]{2, 3}), 0.0);
+        assertEquals(1.0, instance.compute(new long[]{1, 2}, new long[]{1, 2}), 0.0);
+    }
+
+    @Test
+    public void testPartialOverlap() throws Exception {
+        // 2 common of 4 class names; the integer division used to make it 0
+        Set<String> a = new HashSet<>(Arrays.asList("nav", "item", "footer"));
+        Set<String> b = new HashSet<>(Arrays.asList("item", "footer", "ad"));
+        int intersection = instance.countIntersection(a, b);
+        int union = a.size() + b.size() - intersection;
+        assertEquals(0, intersection / union);
+        assertEquals(0.5, instance.compute(a, b), 0.0);
+        // only the identical sets were similar before
+        assertEquals(1.0, instance.compute(a, new HashSet<>(a)), 0.0);
+        assertEquals(0.0, instance.compute(a, new HashSet<>(Arrays.asList("ad"))), 0.0);
     }
 
     @Test
@@ -51,4 +81,41 @@ public class StyleSimComputerTest {
         assertEquals(0.0, instance.compute(tree2, tree3), 0.25);
 
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testDetached() throws Exception {
+        Document doc1 = ParseUtils.parseFile("src/test/resources/html/simple/1.html");
+        Document doc2 = ParseUtils.parseFile("src/test/resources/html/simple/2.html");
+        TreeNode tree1 = new TreeNode(doc1.getDocumentElement(), null);
+        TreeNode tree2 = new TreeNode(doc2.getDocumentElement(), null);
+        double expected = instance.compute(doc1.getDocumentElement(), doc2.getDocumentElement());
+        assertEquals(expected, instance.compute(tree1, tree2), 0.0);
+        assertEquals(expected, instance.compute(tree1.getClassNames(), tree2.getClassNames()), 0.0);
+
+        Set<String> classNames = tree1.getClassNames();
+        tree1.detach();
+        tree2.detach();
+        assertTrue(tree1.isDetached());
+        assertNull(tree1.getChildren().get(0).getInnerNode());
+        assertEquals(classNames, tree1.getClassNames());
+        assertEquals(expected, instance.compute(tree1, tree2), 0.0);
+    }
+
+    @Test
+    public void testClassNames() throws Exception {
+        Set<String> names = new HashSet<>();
+        TreeNode.addClassNames(" a\tb  c\n a ", names);
+        assertEquals(new HashSet<>(Arrays.asList("a", "b", "c")), names);
+        names.clear();
+        TreeNode.addClassNames("   ", names);
+        assertTrue(names.isEmpty());
+
+        Document doc = ParseUtils.parseFile("src/test/resources/html/simple/1.html");
+        Set<String> expected = new XPathEvaluator().findUniqueClassNames(doc.getDocumentElement());
+        expected.remove("");
+        assertEquals(expected, TreeNode.findClassNames(doc.getDocumentElement()));
+        assertEquals(expected, new TreeNode(doc.getDocumentElement(), null).getClassNames());
+        assertEquals(expected, new SAXTreeBuilder().build(
+                new InputSource(new FileReader("src/test/resources/html/simple/1.html"))).getClassNames());
+    }
+}
@@ -0,0 +1,51 @@
+package edu.usc.irds.autoext.tree;
+
+import edu.usc.irds.autoext.utils.Hashing;
+import edu.usc.irds.autoext.utils.ParseUtils;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class TreeFeaturesTest {
+
+    @Test
+    public void testCached() throws Exception {
+        TreeNode tree = new TreeNode(ParseUtils.parseFile("src/test/resources/html/simple/1.html"), null);
+        TreeFeatures features = tree.getFeatures();
+        assertSame(features, tree.getFeatures());
+
+        for (boolean mirrored : new boolean[]{false, true}) {
+            CompactTree compactTree = features.getCompactTree(mirrored);
+            assertSame(compactTree, new ZSTEDComputer().compact(tree, mirrored));
+            CompactTree expected = new CompactTree(tree, mirrored);
+            assertEquals(expected.size(), compactTree.size());
+            assertEquals(expected.getKeyRootCost(), compactTree.getKeyRootCost());
+            assertArrayEquals(expected.getSortedLabels(), compactTree.getSortedLabels());
+            assertArrayEquals(expected.getSortedDegrees(), compactTree.getSortedDegrees());
+        }
+
+        PQGramComputer pqGrams = new PQGramComputer();
+        long[] profile = pqGrams.getProfile(tree);
+        assertSame(profile, new PQGramComputer().getProfile(tree));
+        assertArrayEquals(pqGrams.computeProfile(tree), profile);
+        // different shape of pq-grams
+        assertArrayEquals(new PQGramComputer(1, 2).computeProfile(tree), new PQGramComputer(1, 2).getProfile(tree));
+
+        assertSame(features.getClassNames(), features.getClassNames());
+        assertEquals(tree.getClassNames(), features.getClassNames());
+        long[] classHashes = features.getClassHashes();
+        assertSame(classHashes, features.getClassHashes());
+        assertEquals(tree.getClassNames().size(), classHashes.length);
+        for (int i = 0; i < classHashes.length; i++) {
+            assertTrue(i == 0 || classHashes[i - 1] < classHashes[i]);
+        }
+        for (String name : tree.getClassNames()) {
+            assertTrue(Arrays.binarySearch(classHashes, Hashing.hash(name)) >= 0);
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package edu.usc.irds.autoext.tree;
+
+import edu.usc.irds.autoext.utils.ParseUtils;
+import org.junit.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class TreeNodeTest {
+
+    @Test
+    public void testIndexing() throws Exception {
+        TreeNode tree = new TreeNode(ParseUtils.parseFile("src/test/resources/html/simple/1.html"), null);
+        List<TreeNode> postOrder = tree.postOrderTraverse();
+        assertEquals(tree.getSize(), postOrder.size());
+        assertSame(tree, postOrder.get(postOrder.size() - 1));
+        for (int i = 0; i < postOrder.size(); i++) {
+            TreeNode node = postOrder.get(i);
+            assertEquals(i, node.getIndex());
+            assertSame(node.findLeftMostDescendant(), node.getLeftMostDescendant());
+            // subtree traversal is a range in the traversal of the tree
+            List<TreeNode> subTree = node.postOrderTraverse();
+            assertEquals(node.getSize(), subTree.size());
+            assertSame(node.getLeftMostDescendant(), subTree.get(0));
+            assertSame(node, subTree.get(subTree.size() - 1));
+        }
+
+        List<TreeNode> keyRoots = tree.getKeyRoots();
+        assertSame(tree, keyRoots.get(keyRoots.size() - 1));
+        for (TreeNode keyRoot : keyRoots) {
+            TreeNode parent = keyRoot.getParent();
+            assertEquals(true, parent == null || parent.getLeftMostDescendant() != keyRoot.getLeftMostDescendant());
+        }
+        assertEquals(keyRoots, tree.getKeyRoots());
+    }
+
+    @Test
+    public void testPostOrderIndex() throws Exception {
+        TreeNode tree = new TreeNode(ParseUtils.parseFile("src/test/resources/html/simple/1.html"), null);
+        List<TreeNode> expected = new ArrayList<>(tree.postOrderTraverse());
+        TreeNode subTree = tree.getChildren().get(tree.getChildren().size() - 1);
+        List<TreeNode> expectedSubTree = new ArrayList<>(subTree.postOrderTraverse());
+        List<TreeNode> expectedKeyRoots = new ArrayList<>(subTree.getKeyRoots());
+
+        AtomicInteger startIndex = new AtomicInteger(10);
+        subTree.postOrderIndex(startIndex);
+        assertEquals(10, subTree.getLeftMostDescendant().getIndex());
+        assertEquals(subTree.getIndex(), startIndex.get());
+        // the traversals of the tree and its subtrees are intact
+        assertEquals(expected, tree.postOrderTraverse());
+        assertEquals(expectedSubTree, subTree.postOrderTraverse());
+        assertEquals(expectedKeyRoots, subTree.getKeyRoots());
+    }
+
+    @Test
+    public void testDeepTree() throws Exception {
+        Document doc = DocumentBuilderFactory.newInstance().newDocumentBuilder().newDocument();
+        int depth = 100_000;
+        // built from the bottom, appending to a deep node is slow
+        Element node = doc.createElement("div");
+        for (int i = 1; i < depth; i++) {
+            Element parent = doc.createElement("div");
+            parent.appendChild(node);
+            node = parent;
+        }
+        doc.appendChild(node);
+        TreeNode tree = new TreeNode(doc.getDocumentElement(), null);
+        assertEquals(depth, tree.getSize());
+        assertEquals(depth - 1, tree.getIndex());
+        assertEquals(0, tree.getLeftMostDescendant().getIndex());
+        assertEquals(1, tree.getKeyRoots().size());
+        assertEquals(0.0, new ZSTEDComputer().computeDistance(tree, tree), 0.0);
+    }
+}
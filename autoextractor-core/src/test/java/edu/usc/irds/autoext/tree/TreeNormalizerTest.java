@@ -0,0 +1,54 @@
+package edu.usc.irds.autoext.tree;
+
+import org.junit.Test;
+import org.xml.sax.InputSource;
+
+import java.io.StringReader;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class TreeNormalizerTest {
+
+    private static final String HTML = "<html><head><title>t</title><script>var x;</script></head>"
+            + "<body><ul><li class='a'><b>1</b></li><li><b>2</b></li><li><b>3</b></li><li><i>4</i></li></ul>"
+            + "<div><div><div><p>deep</p></div></div></div><script>var y;</script></body></html>";
+
+    private TreeNode build(TreeNormalizer normalizer) throws Exception {
+        return new SAXTreeBuilder(LabelDictionary.getDefault(), normalizer)
+                .build(new InputSource(new StringReader(HTML)));
+    }
+
+    @Test
+    public void testParse() {
+        assertNull(TreeNormalizer.parse("none"));
+        assertEquals(TreeNormalizer.DEFAULT, TreeNormalizer.parse("default").toString());
+        TreeNormalizer normalizer = TreeNormalizer.parse("drop=script;runs=2;depth=5");
+        assertEquals(2, normalizer.getMaxSiblingRun());
+        assertEquals(5, normalizer.getMaxDepth());
+        assertEquals("drop=script;runs=2;depth=5", normalizer.toString());
+    }
+
+    @Test
+    public void testNormalize() throws Exception {
+        TreeNode plain = build(null);
+        // html, head, title, script, body, ul, 4 x (li, b|i), 3 x div, p, script
+        assertEquals(19, plain.getSize());
+
+        TreeNode normalized = build(TreeNormalizer.createDefault());
+        // html, body, ul, li, b, li, i, 3 x div, p
+        assertEquals(11, normalized.getSize());
+        List<TreeNode> postOrder = normalized.postOrderTraverse();
+        assertEquals(normalized.getSize(), postOrder.size());
+        for (int i = 0; i < postOrder.size(); i++) {
+            assertEquals(i, postOrder.get(i).getIndex());
+        }
+        assertEquals(plain.getClassNames(), normalized.getClassNames());
+
+        TreeNode shallow = build(TreeNormalizer.parse("drop=head,script;runs=0;depth=4"));
+        // html, body, ul, 4 x li, 2 x div
+        assertEquals(9, shallow.getSize());
+        assertEquals(0.0, new ZSTEDComputer().computeDistance(shallow, shallow), 0.0);
+    }
+}
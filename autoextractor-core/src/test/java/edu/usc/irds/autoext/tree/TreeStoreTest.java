@@ -0,0 +1,50 @@
+package edu.usc.irds.autoext.tree;
+
+import edu.usc.irds.autoext.utils.ParseUtils;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TreeStoreTest {
+
+    @Test
+    public void testWriteRead() throws Exception {
+        List<TreeNode> trees = new ArrayList<>();
+        for (int i = 1; i <= 3; i++) {
+            String path = "src/test/resources/html/simple/" + i + ".html";
+            TreeNode tree = ParseUtils.parseTree(path);
+            tree.setExternalId(path);
+            trees.add(tree);
+        }
+        File file = File.createTempFile("trees", ".bin");
+        file.deleteOnExit();
+        TreeStore.write(trees, file);
+        List<TreeNode> read = TreeStore.read(file, LabelDictionary.getDefault());
+
+        assertEquals(trees.size(), read.size());
+        for (int i = 0; i < trees.size(); i++) {
+            TreeNode tree = trees.get(i);
+            TreeNode copy = read.get(i);
+            assertTrue(copy.isDetached());
+            assertEquals(tree.getExternalId(), copy.getExternalId());
+            assertEquals(tree.getSize(), copy.getSize());
+            assertEquals(tree.getStructureHash(), copy.getStructureHash());
+            assertEquals(tree.getClassNames(), copy.getClassNames());
+            assertEquals(tree.getKeyRoots().size(), copy.getKeyRoots().size());
+            List<TreeNode> nodes = tree.postOrderTraverse();
+            List<TreeNode> copyNodes = copy.postOrderTraverse();
+            for (int j = 0; j < nodes.size(); j++) {
+                assertEquals(nodes.get(j).getLabelId(), copyNodes.get(j).getLabelId());
+                assertEquals(j, copyNodes.get(j).getIndex());
+                assertEquals(nodes.get(j).getLeftMostDescendant().getIndex(),
+                        copyNodes.get(j).getLeftMostDescendant().getIndex());
+            }
+            assertEquals(0.0, new ZSTEDComputer().computeDistance(tree, copy), 0.0);
+        }
+    }
+}
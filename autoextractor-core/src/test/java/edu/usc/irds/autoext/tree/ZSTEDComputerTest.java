@@ -1,10 +1,18 @@
 package edu.usc.irds.autoext.tree;
 
+import edu.usc.irds.autoext.utils.ParseUtils;
 import org.junit.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+
+import javax.xml.parsers.DocumentBuilderFactory;
 
 import java.io.File;
+import java.util.List;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
 
 /**
  * Created by tg on 12/29/15.
@@ -31,4 +39,111 @@ public class ZSTEDComputerTest {
         assertEquals(10.0, distance, 0.00);
 
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testIntegralKernel() throws Exception {
+        ZSTEDComputer computer = new ZSTEDComputer();
+        String[] files = {"src/test/resources/html/simple/1.html",
+                "src/test/resources/html/simple/2.html",
+                "src/test/resources/html/simple/3.html"};
+        for (String file1 : files) {
+            for (String file2 : files) {
+                CompactTree tree1 = computer.compact(new TreeNode(ParseUtils.parseFile(file1), null));
+                CompactTree tree2 = computer.compact(new TreeNode(ParseUtils.parseFile(file2), null));
+                DefaultEditCost cost = new DefaultEditCost();
+                assertEquals(new ZSTEDistance(tree1, tree2, cost).compute(),
+                        new IntZSTEDistance(tree1, tree2, cost).compute(), 0.0);
+            }
+        }
+    }
+
+    @Test
+    public void testBoundedDistance() throws Exception {
+        ZSTEDComputer computer = new ZSTEDComputer();
+        TreeNode tree1 = new TreeNode(ParseUtils.parseFile("src/test/resources/html/simple/1.html"), null);
+        TreeNode tree2 = new TreeNode(ParseUtils.parseFile("src/test/resources/html/simple/2.html"), null);
+        TreeNode tree3 = new TreeNode(ParseUtils.parseFile("src/test/resources/html/simple/3.html"), null);
+        double distance = computer.computeDistance(tree1, tree3);
+        assertEquals(distance, computer.computeDistance(tree1, tree3, distance), 0.0);
+        assertEquals(distance, computer.computeDistance(tree1, tree3, distance + 5), 0.0);
+        assertEquals(ZSTEDComputer.DISTANCE_EXCEEDED, computer.computeDistance(tree1, tree3, distance - 1), 0.0);
+        assertEquals(0.0, computer.computeDistance(tree1, tree1, 0.0), 0.0);
+
+        StructureSimComputer simComputer = new StructureSimComputer(computer);
+        double similarity = simComputer.compute(tree1, tree2);
+        assertEquals(similarity, simComputer.compute(tree1, tree2, similarity), 0.0);
+        assertEquals(0.0, simComputer.compute(tree1, tree2, similarity + 0.01), 0.0);
+        assertEquals(similarity, new StructureSimComputer(computer, 0.5).compute(tree1, tree2), 0.0);
+    }
+
+    /**
+     * Creates a list with given number of identical items
+     */
+    private TreeNode createList(int numItems, boolean withLink) throws Exception {
+        Document doc = DocumentBuilderFactory.newInstance().newDocumentBuilder().newDocument();
+        Element list = doc.createElement("ul");
+        for (int i = 0; i < numItems; i++) {
+            Element item = doc.createElement("li");
+            Element div = doc.createElement("div");
+            div.appendChild(doc.createElement(withLink ? "a" : "span"));
+            div.appendChild(doc.createElement("img"));
+            item.appendChild(div);
+            item.appendChild(doc.createElement("p"));
+            list.appendChild(item);
+        }
+        return new TreeNode(list, null);
+    }
+
+    @Test
+    public void testIdenticalSubtrees() throws Exception {
+        TreeNode tree1 = createList(12, true);
+        TreeNode tree2 = createList(9, false);
+        TreeNode tree3 = createList(12, true);
+        List<TreeNode> items = tree1.getChildren();
+        assertEquals(items.get(0).getStructureHash(), items.get(5).getStructureHash());
+        assertEquals(tree1.getStructureHash(), tree3.getStructureHash());
+        assertNotEquals(tree1.getStructureHash(), tree2.getStructureHash());
+
+        ZSTEDComputer computer = new ZSTEDComputer();
+        CompactTree compact1 = computer.compact(tree1);
+        CompactTree compact2 = computer.compact(tree2);
+        DefaultEditCost cost = new DefaultEditCost();
+        assertEquals(new ZSTEDistance(compact1, compact2, cost).compute(),
+                new IntZSTEDistance(compact1, compact2, cost).compute(), 0.0);
+        assertEquals(0.0, computer.computeDistance(tree1, tree3), 0.0);
+    }
+
+    @Test
+    public void testIdenticalSubtreePairs() throws Exception {
+        // the items of both the lists are identical subtrees, at different positions
+        CompactTree compact1 = new CompactTree(createList(7, true));
+        CompactTree compact2 = new CompactTree(createList(4, true));
+        DefaultEditCost unit = new DefaultEditCost();
+        DefaultEditCost skewed = new DefaultEditCost() {
+            @Override
+            public double getInsertCost(TreeNode node) {
+                return 2;
+            }
+
+            @Override
+            public double getRemoveCost(TreeNode node) {
+                return 3;
+            }
+
+            @Override
+            public double getReplaceCost(TreeNode node1, TreeNode node2) {
+                return 4;
+            }
+        };
+        assertEquals(new ZSTEDistance(compact1, compact2, unit).compute(),
+                new IntZSTEDistance(compact1, compact2, unit).compute(), 0.0);
+        assertEquals(new ZSTEDistance(compact1, compact2, skewed).compute(),
+                new IntZSTEDistance(compact1, compact2, 2, 3, 4, 0).compute(), 0.0);
+        assertEquals(new ZSTEDistance(compact2, compact1, skewed).compute(),
+                new IntZSTEDistance(compact2, compact1, 2, 3, 4, 0).compute(), 0.0);
+        int exact = new IntZSTEDistance(compact1, compact2, unit).compute();
+        for (int band : new int[]{0, 5, 15}) {
+            assertTrue(new IntZSTEDistance(compact1, compact2, unit).compute(band) >= exact);
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package edu.usc.irds.autoext.utils;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.stream.IntStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class DistanceCacheTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testMemoryEviction() throws Exception {
+        DistanceCache cache = new DistanceCache(2);
+        cache.put(1, 2, 7, 1.0);
+        cache.put(1, 3, 7, 2.0);
+        assertEquals(1.0, cache.get(1, 2, 7), 0.0);
+        cache.put(1, 4, 7, 3.0); // (1, 3) is the least recently used
+        assertTrue(Double.isNaN(cache.get(1, 3, 7)));
+        assertEquals(1.0, cache.get(1, 2, 7), 0.0);
+        assertEquals(3.0, cache.get(1, 4, 7), 0.0);
+        assertTrue(Double.isNaN(cache.get(1, 2, 8))); // different metric
+        assertEquals(1, cache.getEvictions());
+        assertEquals(3, cache.getMemoryHits());
+        assertEquals(2, cache.getMisses());
+    }
+
+    @Test
+    public void testPersistence() throws Exception {
+        File file = new File(folder.getRoot(), "distances.bin");
+        int n = 100_000; // beyond the initial capacity of disk table
+        try (DistanceCache cache = new DistanceCache(10, file)) {
+            for (int i = 0; i < n; i++) {
+                cache.put(i, i + 1, 7, i / 2.0);
+            }
+            cache.put(0, 1, 7, 42.0); // update
+            assertEquals(n, cache.getDiskSize());
+            assertEquals(42.0, cache.get(0, 1, 7), 0.0);
+            assertEquals(10.0, cache.get(20, 21, 7), 0.0);
+            assertTrue(cache.getDiskHits() > 0);
+        }
+        try (DistanceCache cache = new DistanceCache(10, file)) {
+            assertEquals(n, cache.getDiskSize());
+            assertEquals(42.0, cache.get(0, 1, 7), 0.0);
+            for (int i = 1; i < n; i++) {
+                assertEquals(i / 2.0, cache.get(i, i + 1, 7), 0.0);
+            }
+            assertTrue(Double.isNaN(cache.get(1, 0, 7)));
+            assertEquals(n, cache.getDiskHits());
+            assertEquals(1, cache.getMisses());
+        }
+    }
+
+    @Test
+    public void testNotClosed() throws Exception {
+        File file = new File(folder.getRoot(), "distances.bin");
+        // fits in the initial capacity of disk table; a multiple of the write batch,
+        // so that none of the distances are left unwritten when the cache isn't closed
+        int n = 40 * 1024;
+        DistanceCache crashed = new DistanceCache(10, file);
+        for (int i = 0; i < n; i++) {
+            crashed.put(i, i + 1, 7, i);
+        }
+        // the header still has the count of an empty table, the table must grow nevertheless
+        try (DistanceCache cache = new DistanceCache(10, file)) {
+            assertEquals(n, cache.getDiskSize());
+            for (int i = n; i < 2 * n; i++) {
+                cache.put(i, i + 1, 7, i);
+            }
+            assertEquals(2 * n, cache.getDiskSize());
+            for (int i = 0; i < 2 * n; i++) {
+                assertEquals(i, cache.get(i, i + 1, 7), 0.0);
+            }
+        } finally {
+            crashed.close();
+        }
+    }
+
+    @Test
+    public void testConcurrentAccess() throws Exception {
+        File file = new File(folder.getRoot(), "distances.bin");
+        int n = 20_000;
+        try (DistanceCache cache = new DistanceCache(n / 2, file)) {
+            IntStream.range(0, 4).parallel().forEach(t -> {
+                for (int i = t; i < n; i += 4) {
+                    cache.put(i, i + 1, 7, i);
+                }
+            });
+            IntStream.range(0, n).parallel().forEach(i -> assertEquals(i, cache.get(i, i + 1, 7), 0.0));
+            assertEquals(n, cache.getDiskSize());
+            assertTrue(cache.getMemorySize() <= n / 2);
+            assertEquals(n, cache.getMemoryHits() + cache.getDiskHits());
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package edu.usc.irds.autoext.utils;
+
+import edu.usc.irds.autoext.matrix.DenseMatrix;
+import edu.usc.irds.autoext.matrix.Matrix;
+import edu.usc.irds.autoext.matrix.PackedSymmetricMatrix;
+import edu.usc.irds.autoext.matrix.Precision;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.function.BiFunction;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class ParallelMatrixBuilderTest {
+
+    @Test
+    public void testComputeSymmetricMatrix() throws Exception {
+        Random random = new Random(42);
+        BiFunction<Integer, Integer, Double> function = (a, b) -> Math.abs(a - b) / (double) (a + b + 1);
+        for (int n : new int[]{0, 1, 5, 32, 100}) {
+            List<Integer> objs = new ArrayList<>();
+            for (int i = 0; i < n; i++) {
+                // skewed costs
+                objs.add(random.nextInt(10) == 0 ? 1000 + random.nextInt(1000) : random.nextInt(10));
+            }
+            double[][] expected = MatrixUtils.computeSymmetricMatrix(function, objs);
+            for (int tileSize : new int[]{1, 7, 32}) {
+                double[][] actual = new ParallelMatrixBuilder(4, tileSize)
+                        .computeSymmetricMatrix(function, objs, Integer::doubleValue);
+                assertArrayEquals(expected, actual);
+            }
+        }
+    }
+
+    @Test
+    public void testIncremental() throws Exception {
+        BiFunction<Integer, Integer, Double> function = (a, b) -> Math.abs(a - b) / (double) (a + b + 1);
+        int n = 45;
+        List<Integer> objs = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            objs.add(i * 13 % 29);
+        }
+        double[][] expected = MatrixUtils.computeSymmetricMatrix(function, objs);
+        for (int from : new int[]{0, 1, 20, 44, 45}) {
+            // the previous cells are filled, the ones computed again would be overwritten
+            DenseMatrix dense = new DenseMatrix(n, n);
+            Matrix packed = new PackedSymmetricMatrix(n, Precision.DOUBLE);
+            for (int i = 0; i < from; i++) {
+                for (int j = 0; j < from; j++) {
+                    dense.set(i, j, -1);
+                    packed.set(i, j, -1);
+                }
+            }
+            ParallelMatrixBuilder builder = new ParallelMatrixBuilder(3, 8);
+            builder.computeSymmetricMatrix(function, objs, Integer::doubleValue, dense, from);
+            builder.computeSymmetricMatrix(function, objs, Integer::doubleValue, packed, from);
+            for (int i = 0; i < n; i++) {
+                for (int j = 0; j < n; j++) {
+                    double value = i < from && j < from ? -1 : expected[i][j];
+                    assertEquals(value, dense.get(i, j), 0.0);
+                    assertEquals(value, packed.get(i, j), 0.0);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package edu.usc.irds.autoext.utils;
+
+import edu.usc.irds.autoext.matrix.MappedMatrix;
+import edu.usc.irds.autoext.matrix.Precision;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiFunction;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class TileCheckpointTest {
+
+    @Test
+    public void testResume() throws Exception {
+        int n = 50;
+        List<Integer> objs = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            objs.add(i * 11 % 23);
+        }
+        BiFunction<Integer, Integer, Double> function = (a, b) -> a * 100.0 + b;
+        File matrixFile = File.createTempFile("matrix", ".bin");
+        File manifestFile = new File(matrixFile.getPath() + ".checkpoint");
+        matrixFile.deleteOnExit();
+        manifestFile.deleteOnExit();
+        ParallelMatrixBuilder builder = new ParallelMatrixBuilder(2, 8);
+        int total = n * (n + 1) / 2;
+
+        AtomicInteger calls = new AtomicInteger();
+        try (MappedMatrix matrix = MappedMatrix.create(matrixFile, n, Precision.DOUBLE)) {
+            TileCheckpoint checkpoint = new TileCheckpoint(manifestFile, matrix, 42L, 0);
+            builder.computeSymmetricMatrix((a, b) -> {
+                if (calls.incrementAndGet() > total / 2) {
+                    throw new IllegalStateException("killed");
+                }
+                return function.apply(a, b);
+            }, objs, Integer::doubleValue, matrix, 0, checkpoint);
+            fail("Exception expected");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+        assertTrue(TileCheckpoint.isResumable(manifestFile, 42L));
+        assertFalse(TileCheckpoint.isResumable(manifestFile, 43L));
+
+        calls.set(0);
+        try (MappedMatrix matrix = MappedMatrix.open(matrixFile, true)) {
+            TileCheckpoint checkpoint = new TileCheckpoint(manifestFile, matrix, 42L, 0);
+            builder.computeSymmetricMatrix((a, b) -> {
+                calls.incrementAndGet();
+                return function.apply(a, b);
+            }, objs, Integer::doubleValue, matrix, 0, checkpoint);
+            assertTrue(checkpoint.getResumedTiles() > 0);
+            assertTrue(calls.get() < total);
+            for (int i = 0; i < n; i++) {
+                for (int j = 0; j < n; j++) {
+                    int a = objs.get(Math.min(i, j));
+                    int b = objs.get(Math.max(i, j));
+                    assertEquals(function.apply(a, b), matrix.get(i, j), 0.0);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testCompleteWhileSaving() throws Exception {
+        File manifestFile = File.createTempFile("matrix", ".checkpoint");
+        manifestFile.deleteOnExit();
+        CountDownLatch flushing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        TileCheckpoint checkpoint = new TileCheckpoint(manifestFile, () -> {
+            flushing.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, 42L, 0);
+        checkpoint.start(10, 0, 5, 3);
+        CompletableFuture<Void> saving = CompletableFuture.runAsync(() -> checkpoint.complete(0));
+        try {
+            assertTrue(flushing.await(10, TimeUnit.SECONDS));
+            // the other workers aren't blocked by the flush
+            CompletableFuture.runAsync(() -> checkpoint.complete(1)).get(10, TimeUnit.SECONDS);
+            assertTrue(checkpoint.isCompleted(1));
+            assertEquals(2, checkpoint.getCompletedTiles());
+        } finally {
+            release.countDown();
+        }
+        saving.get(10, TimeUnit.SECONDS);
+
+        checkpoint.save();
+        TileCheckpoint resumed = new TileCheckpoint(manifestFile, () -> { }, 42L, 0);
+        resumed.start(10, 0, 5, 3);
+        assertEquals(2, resumed.getResumedTiles());
+    }
+}
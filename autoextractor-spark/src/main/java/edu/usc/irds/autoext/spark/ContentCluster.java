@@ -5,6 +5,7 @@ import edu.usc.irds.autoext.nutch.IndexedNutchContentRDD;
 import edu.usc.irds.autoext.nutch.NutchContentRDD;
 import edu.usc.irds.autoext.tree.GrossSimComputer;
 import edu.usc.irds.autoext.tree.TreeNode;
+import edu.usc.irds.autoext.utils.ParseUtils;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.fs.FileStatus;
 import org.apache.hadoop.fs.FileSystem;
@@ -17,14 +18,11 @@ import org.apache.spark.api.java.JavaRDD;
 import org.apache.spark.api.java.JavaSparkContext;
 import org.apache.spark.mllib.linalg.distributed.CoordinateMatrix;
 import org.apache.spark.mllib.linalg.distributed.MatrixEntry;
-import org.cyberneko.html.parsers.DOMParser;
 import org.kohsuke.args4j.CmdLineException;
 import org.kohsuke.args4j.CmdLineParser;
 import org.kohsuke.args4j.Option;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.w3c.dom.Document;
-import org.xml.sax.InputSource;
 import scala.Tuple2;
 
 import java.io.ByteArrayInputStream;
@@ -118,16 +116,10 @@ public class ContentCluster implements Closeable {
                                 .toJavaRDD()
                                 .map(tuple -> {
                                     Content content = tuple.getContent();
-                                    Document doc;
                                     try (ByteArrayInputStream stream =
                                                  new ByteArrayInputStream(content.getContent())) {
-                                        InputSource source = new InputSource(stream);
-                                        DOMParser parser = new DOMParser();
-                                        parser.parse(source);
-                                        doc = parser.getDocument();
-                                    }
-                                    try {
-                                        TreeNode tree = new TreeNode(doc.getDocumentElement(), null);
+                                        // the trees are cached, the detached trees don't hold the DOMs
+                                        TreeNode tree = ParseUtils.parseTree(stream);
                                         tree.setExternalId(content.getUrl());
                                         return new Tuple2<>(tuple.getIndex(), tree);
                                     } catch (Exception e) {